@@ -0,0 +1,71 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding balance_summary for every customer on H2: the per-customer
+ * procedure (a lookup per account) against the set-based aggregator.
+ * Uses the BalanceSummaryAggregatorTest fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceSummaryAggregatorBenchmark {
+
+    @Param({"500", "1500"})
+    public int customers;
+
+    private TestDatabase database;
+    private BalanceSummaryAggregator aggregator;
+    private List<String> customerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new TestDatabase();
+        aggregator = new BalanceSummaryAggregator();
+        BalanceSummaryAggregatorTest.loadCustomers(database, customers);
+        customerIds = new ArrayList<>();
+        for (int c = 1; c <= customers; c++) {
+            customerIds.add(BalanceSummaryAggregatorTest.customerId(c));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void perCustomerProcedure() throws SQLException {
+        BalanceSummaryAggregatorTest.runProcedure(database, customerIds);
+    }
+
+    @Benchmark
+    public int setBased() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            return aggregator.aggregateRange(conn, customerIds.get(0), customerIds.get(customerIds.size() - 1));
+        }
+    }
+}
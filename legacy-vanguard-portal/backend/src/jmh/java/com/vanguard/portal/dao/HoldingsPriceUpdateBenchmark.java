@@ -0,0 +1,109 @@
+package com.vanguard.portal.dao;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.model.Holding;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing new prices for every holding on H2: one save() upsert per holding,
+ * as HoldingsServiceImpl did, against one batched updatePrices() call.
+ * Statements per second is holdings divided by the time per operation.
+ *
+ * DAO logging is raised to WARN so the per-row INFO lines of save() do not
+ * dominate the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoldingsPriceUpdateBenchmark {
+
+    private static final int HOLDINGS_PER_ACCOUNT = 10;
+
+    @Param({"1000", "10000"})
+    public int holdings;
+
+    private TestDatabase database;
+    private HoldingsDAOImpl holdingsDAO;
+    private List<Holding> repriced;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Logger.getLogger("com.vanguard.portal.dao").setLevel(org.apache.log4j.Level.WARN);
+
+        database = new TestDatabase();
+        holdingsDAO = new HoldingsDAOImpl();
+        TestSupport.inject(holdingsDAO, "dataSource", database);
+
+        int accounts = holdings / HOLDINGS_PER_ACCOUNT;
+        try (Connection conn = database.getConnection();
+             PreparedStatement account = conn.prepareStatement("INSERT INTO accounts "
+                     + "(account_number, customer_id, account_type, status, open_date) VALUES (?, ?, 'IRA', 'ACTIVE', CURRENT_DATE)");
+             PreparedStatement holding = conn.prepareStatement("INSERT INTO holdings "
+                     + "(account_number, symbol, quantity, purchase_price, purchase_date) VALUES (?, ?, 10, 100, CURRENT_DATE)")) {
+            for (int a = 1; a <= accounts; a++) {
+                account.setString(1, "A" + a);
+                account.setString(2, "C" + a);
+                account.addBatch();
+                for (int h = 0; h < HOLDINGS_PER_ACCOUNT; h++) {
+                    holding.setString(1, "A" + a);
+                    holding.setString(2, "S" + h);
+                    holding.addBatch();
+                }
+            }
+            account.executeBatch();
+            holding.executeBatch();
+        }
+
+        repriced = new ArrayList<>();
+        for (int a = 1; a <= accounts; a++) {
+            for (Holding holding : holdingsDAO.findByAccountNumber("A" + a)) {
+                holding.setCurrentPrice(new BigDecimal("101.25"));
+                holding.setMarketValue(new BigDecimal("1012.50"));
+                holding.setGainLossPct(new BigDecimal("1.2500"));
+                repriced.add(holding);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void saveEach() {
+        for (Holding holding : repriced) {
+            holdingsDAO.save(holding);
+        }
+    }
+
+    @Benchmark
+    public int updatePrices() {
+        return holdingsDAO.updatePrices(repriced);
+    }
+}
@@ -0,0 +1,78 @@
+package com.vanguard.portal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full VaR simulation per operation, across portfolio size and pool size.
+ *
+ * With the independent generator the cost per scenario is linear in the
+ * position count, so the threads axis shows the engine's own scaling; the
+ * correlated generator adds the O(n^2) Cholesky product per scenario.
+ * Near-linear scaling means the 1-thread time divided by the N-thread time
+ * stays close to N, up to the number of cores.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="MonteCarloVarEngineBenchmark -p generator=independent"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonteCarloVarEngineBenchmark {
+
+    private static final int SCENARIOS = 20000;
+
+    @Param({"10", "100", "1000"})
+    public int positions;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"independent", "correlated"})
+    public String generator;
+
+    private MonteCarloVarEngine engine;
+    private ScenarioGenerator scenarios;
+    private double[] positionValues;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new MonteCarloVarEngine(threads);
+        positionValues = new double[positions];
+        double[] volatility = new double[positions];
+        for (int p = 0; p < positions; p++) {
+            positionValues[p] = 1000.0 + 10.0 * p;
+            volatility[p] = 0.10 + 0.30 * p / positions;
+        }
+        scenarios = "correlated".equals(generator)
+                ? new CorrelatedNormalScenarios(CorrelatedNormalScenariosTest.oneFactorMatrix(positions, 0.36), volatility)
+                : new IndependentNormalScenarios(volatility);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public double valueAtRisk() {
+        return MonteCarloVarEngine.valueAtRisk(engine.simulate(positionValues, scenarios, SCENARIOS, 17L), 0.99);
+    }
+}
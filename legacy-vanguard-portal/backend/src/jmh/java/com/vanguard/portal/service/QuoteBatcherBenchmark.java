@@ -0,0 +1,79 @@
+package com.vanguard.portal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quote requests of 5 random symbols from 32 threads against the local SOAP
+ * stub with 20ms latency: a provider call per request against the batcher.
+ * The provider call counts for the same load are asserted in QuoteBatcherTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class QuoteBatcherBenchmark {
+
+    private StubQuoteProvider provider;
+    private SoapQuoteClient client;
+    private QuoteBatcher batcher;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        private final SplittableRandom random = new SplittableRandom();
+
+        String[] nextRequest() {
+            Set<String> symbols = new LinkedHashSet<>();
+            while (symbols.size() < 5) {
+                symbols.add("SYM" + random.nextInt(500));
+            }
+            return symbols.toArray(new String[0]);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        provider = new StubQuoteProvider();
+        provider.setLatencyMillis(20);
+        client = provider.newClient();
+        batcher = provider.newBatcher(10L, 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batcher.destroy();
+        provider.stop();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> perRequest(Caller caller) throws Exception {
+        return client.getQuotes(caller.nextRequest());
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> batched(Caller caller) throws Exception {
+        return batcher.getQuotes(caller.nextRequest());
+    }
+}
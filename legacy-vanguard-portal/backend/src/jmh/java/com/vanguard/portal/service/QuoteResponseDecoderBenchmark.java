@@ -0,0 +1,54 @@
+package com.vanguard.portal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one in-memory GetQuotes response with the SAAJ/DOM path and with
+ * StaxQuoteResponseDecoder. Run with {@code -prof gc} for allocation per decode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuoteResponseDecoderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int quotes;
+
+    private final StaxQuoteResponseDecoder staxDecoder = new StaxQuoteResponseDecoder(SoapQuoteClient.SOAP_NAMESPACE);
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        response = StaxQuoteResponseDecoderTest.response(quotes).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> dom() throws Exception {
+        return SoapQuoteClient.decodeWithDom(new ByteArrayInputStream(response), "text/xml; charset=utf-8");
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> stax() throws Exception {
+        return staxDecoder.decode(new ByteArrayInputStream(response));
+    }
+}
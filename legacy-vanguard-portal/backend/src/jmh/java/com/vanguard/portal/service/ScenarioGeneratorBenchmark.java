@@ -0,0 +1,84 @@
+package com.vanguard.portal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one scenario draw, and of the once-per-run Cholesky factorization,
+ * for 50 symbols held in 1 or 4 lots each.
+ *
+ * With lots=1 the correlated generator works on the distinct-symbol matrix,
+ * as calculateValueAtRisk does; with lots=4 it works on the matrix expanded
+ * to one row per lot, as it did before lots were aggregated. A draw is n
+ * Gaussians plus an n^2/2 triangular product; the independent generator is
+ * the Gaussians alone, so the difference between the two is the product.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ScenarioGeneratorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScenarioGeneratorBenchmark {
+
+    private static final int SYMBOLS = 50;
+
+    @Param({"1", "4"})
+    public int lots;
+
+    @Param({"independent", "correlated"})
+    public String generator;
+
+    private double[][] correlation;
+    private double[] volatility;
+    private ScenarioGenerator scenarios;
+    private SplittableRandom rng;
+    private double[] returns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double[][] symbolMatrix = CorrelatedNormalScenariosTest.oneFactorMatrix(SYMBOLS, 0.36);
+        double[] symbolVolatility = CorrelatedNormalScenariosTest.volatilities(SYMBOLS);
+        correlation = CorrelatedNormalScenariosTest.expand(symbolMatrix, lots);
+        volatility = new double[SYMBOLS * lots];
+        for (int p = 0; p < volatility.length; p++) {
+            volatility[p] = symbolVolatility[p / lots];
+        }
+        scenarios = "correlated".equals(generator)
+                ? new CorrelatedNormalScenarios(correlation, volatility)
+                : new IndependentNormalScenarios(volatility);
+        rng = new SplittableRandom(17L);
+        returns = new double[volatility.length];
+    }
+
+    @Benchmark
+    public double[] nextScenario() {
+        scenarios.nextScenario(rng, returns);
+        return returns;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ScenarioGenerator factor() {
+        return "correlated".equals(generator)
+                ? new CorrelatedNormalScenarios(correlation, volatility)
+                : new IndependentNormalScenarios(volatility);
+    }
+}
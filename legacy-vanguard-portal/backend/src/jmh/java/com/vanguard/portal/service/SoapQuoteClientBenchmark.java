@@ -0,0 +1,120 @@
+package com.vanguard.portal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPConnection;
+import javax.xml.soap.SOAPConnectionFactory;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One GetQuotes round trip against the local SOAP stub (no added latency):
+ * the original per-call SAAJ client against the reusable SoapQuoteClient.
+ * Run with {@code -prof gc} for the allocation per call.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="SoapQuoteClientBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class SoapQuoteClientBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int symbolCount;
+
+    private StubQuoteProvider provider;
+    private SoapQuoteClient client;
+    private String[] symbols;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        provider = new StubQuoteProvider();
+        client = provider.newClient();
+        symbols = new String[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbols[i] = "SYM" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.stop();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> perCallSaaj() throws Exception {
+        return legacyGetQuotes(provider.getEndpoint(), symbols);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> reusedClient() throws Exception {
+        return client.getQuotes(symbols);
+    }
+
+    /**
+     * The call as MarketDataServiceImpl made it before SoapQuoteClient: new
+     * factories, a SAAJ-built envelope and a new connection on every call.
+     */
+    private static Map<String, BigDecimal> legacyGetQuotes(String endpoint, String[] symbols) throws Exception {
+        Map<String, BigDecimal> quotes = new HashMap<>();
+
+        SOAPConnection soapConnection = SOAPConnectionFactory.newInstance().createConnection();
+        SOAPMessage soapMessage = MessageFactory.newInstance().createMessage();
+        SOAPEnvelope envelope = soapMessage.getSOAPPart().getEnvelope();
+        envelope.addNamespaceDeclaration("md", SoapQuoteClient.SOAP_NAMESPACE);
+
+        SOAPElement getQuotes = envelope.getBody().addChildElement("GetQuotes", "md");
+        for (String symbol : symbols) {
+            getQuotes.addChildElement("Symbol", "md").addTextNode(symbol);
+        }
+
+        SOAPHeader soapHeader = envelope.getHeader();
+        SOAPElement authHeader = soapHeader.addChildElement("Authentication", "md");
+        authHeader.addChildElement("Username", "md").addTextNode("vanguard_prod");
+        authHeader.addChildElement("Password", "md").addTextNode("legacy2012");
+        soapMessage.saveChanges();
+
+        SOAPMessage soapResponse = soapConnection.call(soapMessage, new URL(endpoint));
+        SOAPBody responseBody = soapResponse.getSOAPBody();
+
+        org.w3c.dom.NodeList quoteNodes = responseBody.getElementsByTagNameNS(SoapQuoteClient.SOAP_NAMESPACE, "Quote");
+        for (int i = 0; i < quoteNodes.getLength(); i++) {
+            org.w3c.dom.Element quoteElement = (org.w3c.dom.Element) quoteNodes.item(i);
+            String symbol = quoteElement.getElementsByTagNameNS(SoapQuoteClient.SOAP_NAMESPACE, "Symbol")
+                    .item(0).getTextContent();
+            String priceStr = quoteElement.getElementsByTagNameNS(SoapQuoteClient.SOAP_NAMESPACE, "LastPrice")
+                    .item(0).getTextContent();
+            quotes.put(symbol, new BigDecimal(priceStr));
+        }
+
+        soapConnection.close();
+        return quotes;
+    }
+}
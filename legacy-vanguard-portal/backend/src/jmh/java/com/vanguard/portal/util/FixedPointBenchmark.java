@@ -0,0 +1,138 @@
+package com.vanguard.portal.util;
+
+import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.model.HoldingsSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The holdings P&amp;L loops in BigDecimal, as they were, against scaled longs:
+ * portfolio totals (BalancesHoldingsServlet) over Holding beans and over a
+ * HoldingsSnapshot, and per-holding repricing (HoldingsServiceImpl).
+ * Run with {@code -prof gc} for allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointBenchmark {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    @Param({"100", "10000"})
+    public int holdings;
+
+    private List<Holding> beans;
+    private HoldingsSnapshot snapshot;
+    private BigDecimal[] quotes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(3);
+        beans = new ArrayList<>(holdings);
+        quotes = new BigDecimal[holdings];
+        HoldingsSnapshot.Builder builder = new HoldingsSnapshot.Builder(holdings);
+        for (int i = 0; i < holdings; i++) {
+            long quantity = 1 + random.nextInt(10000000);
+            long purchasePrice = 100 + random.nextInt(100000);
+            long currentPrice = 100 + random.nextInt(100000);
+            long marketValue = FixedPoint.multiply(quantity, FixedPoint.QUANTITY_SCALE,
+                    currentPrice, FixedPoint.MONEY_SCALE, FixedPoint.MONEY_SCALE);
+
+            Holding holding = new Holding();
+            holding.setSymbol("S" + (i % 500));
+            holding.setQuantity(FixedPoint.toBigDecimal(quantity, FixedPoint.QUANTITY_SCALE));
+            holding.setPurchasePrice(FixedPoint.toBigDecimal(purchasePrice, FixedPoint.MONEY_SCALE));
+            holding.setMarketValue(FixedPoint.toBigDecimal(marketValue, FixedPoint.MONEY_SCALE));
+            beans.add(holding);
+            quotes[i] = FixedPoint.toBigDecimal(currentPrice, FixedPoint.MONEY_SCALE);
+
+            builder.add(i, "A" + (i / 10), holding.getSymbol(), quantity, purchasePrice, currentPrice,
+                    marketValue, 0L, 0L, 0L, 0);
+        }
+        snapshot = builder.build();
+    }
+
+    @Benchmark
+    public void totalsBigDecimal(Blackhole blackhole) {
+        BigDecimal totalMarketValue = BigDecimal.ZERO;
+        BigDecimal totalGainLoss = BigDecimal.ZERO;
+        for (Holding holding : beans) {
+            totalMarketValue = totalMarketValue.add(holding.getMarketValue());
+            BigDecimal costBasis = holding.getQuantity().multiply(holding.getPurchasePrice());
+            totalGainLoss = totalGainLoss.add(holding.getMarketValue().subtract(costBasis));
+        }
+        blackhole.consume(totalMarketValue);
+        blackhole.consume(totalGainLoss);
+    }
+
+    @Benchmark
+    public void totalsFixedPointOverBeans(Blackhole blackhole) {
+        final int costScale = HoldingsSnapshot.COST_SCALE;
+        long totalMarketValue = 0L;
+        long totalGainLoss = 0L;
+        for (Holding holding : beans) {
+            long marketValue = FixedPoint.toScaled(holding.getMarketValue(), FixedPoint.MONEY_SCALE);
+            long costBasis = FixedPoint.multiply(
+                    FixedPoint.toScaled(holding.getQuantity(), FixedPoint.QUANTITY_SCALE), FixedPoint.QUANTITY_SCALE,
+                    FixedPoint.toScaled(holding.getPurchasePrice(), FixedPoint.MONEY_SCALE), FixedPoint.MONEY_SCALE,
+                    costScale);
+            totalMarketValue += marketValue;
+            totalGainLoss += FixedPoint.rescale(marketValue, FixedPoint.MONEY_SCALE, costScale) - costBasis;
+        }
+        blackhole.consume(totalMarketValue);
+        blackhole.consume(totalGainLoss);
+    }
+
+    @Benchmark
+    public void totalsSnapshot(Blackhole blackhole) {
+        blackhole.consume(snapshot.totalMarketValue());
+        blackhole.consume(snapshot.totalGainLoss());
+    }
+
+    @Benchmark
+    public void repriceBigDecimal(Blackhole blackhole) {
+        for (int i = 0; i < holdings; i++) {
+            Holding holding = beans.get(i);
+            BigDecimal currentPrice = quotes[i];
+            BigDecimal costBasis = holding.getPurchasePrice();
+            blackhole.consume(holding.getQuantity().multiply(currentPrice));
+            blackhole.consume(currentPrice.subtract(costBasis).divide(costBasis, 4, BigDecimal.ROUND_HALF_UP)
+                    .multiply(HUNDRED));
+        }
+    }
+
+    @Benchmark
+    public void repriceFixedPoint(Blackhole blackhole) {
+        for (int i = 0; i < holdings; i++) {
+            Holding holding = beans.get(i);
+            BigDecimal currentPrice = quotes[i];
+            int priceScale = FixedPoint.exactScale(currentPrice, FixedPoint.PRICE_SCALE);
+            long price = FixedPoint.toScaled(currentPrice, priceScale);
+            long quantity = FixedPoint.toScaled(holding.getQuantity(), FixedPoint.QUANTITY_SCALE);
+            long costBasis = FixedPoint.toScaled(holding.getPurchasePrice(), priceScale);
+            blackhole.consume(FixedPoint.multiply(quantity, FixedPoint.QUANTITY_SCALE,
+                    price, priceScale, FixedPoint.MONEY_SCALE));
+            blackhole.consume(FixedPoint.percentChange(price, costBasis));
+        }
+    }
+}
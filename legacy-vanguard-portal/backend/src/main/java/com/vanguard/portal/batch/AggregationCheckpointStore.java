@@ -0,0 +1,242 @@
+package com.vanguard.portal.batch;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists batch job progress in the batch_job_state, batch_job_checkpoint and
+ * batch_job_retry tables.
+ *
+ * Every method works on the caller's connection and never commits, so a
+ * checkpoint written right before a block's commit is atomic with the block
+ * itself: after a crash the stored last_customer_id is exactly the last
+ * customer whose summary row made it to the database.
+ *
+ * @author Legacy Team
+ * @since 2013
+ */
+@Component
+public class AggregationCheckpointStore {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+
+    /**
+     * Records the database time at which a new run of the job in the given mode
+     * starts and returns it. Each mode keeps its own start time, so an incremental
+     * run in between does not move the start of a partitioned run that is later
+     * resumed. A resumed run keeps the start time of the run it continues.
+     */
+    public Timestamp startRun(Connection conn, String jobName, String mode) throws SQLException {
+        Timestamp runStarted;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW()");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            runStarted = rs.getTimestamp(1);
+        }
+
+        String sql = "INSERT INTO batch_job_state (job_name, run_started) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE run_started = VALUES(run_started)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, runKey(jobName, mode));
+            stmt.setTimestamp(2, runStarted);
+            stmt.executeUpdate();
+        }
+
+        return runStarted;
+    }
+
+    /**
+     * Marks the current run in the given mode as complete: its start time becomes
+     * the watermark the next incremental run compares last_updated timestamps
+     * against. The watermark only moves forward; a resumed run that started before
+     * a later completed run leaves it where it is.
+     */
+    public void completeRun(Connection conn, String jobName, String mode) throws SQLException {
+        Timestamp runStarted;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT run_started FROM batch_job_state WHERE job_name = ?")) {
+            stmt.setString(1, runKey(jobName, mode));
+            try (ResultSet rs = stmt.executeQuery()) {
+                runStarted = rs.next() ? rs.getTimestamp("run_started") : null;
+            }
+        }
+        if (runStarted == null) {
+            return;
+        }
+
+        String sql = "INSERT INTO batch_job_state (job_name, last_completed_run) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE last_completed_run = " +
+                     "CASE WHEN last_completed_run IS NULL OR last_completed_run < VALUES(last_completed_run) " +
+                     "THEN VALUES(last_completed_run) ELSE last_completed_run END";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobName);
+            stmt.setTimestamp(2, runStarted);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the start time of the last completed run, or null if the job never completed.
+     */
+    public Timestamp loadLastCompletedRun(Connection conn, String jobName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT last_completed_run FROM batch_job_state WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getTimestamp("last_completed_run") : null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the stored partitions of a job with a fresh, unstarted set.
+     */
+    public void resetPartitions(Connection conn, String jobName, List<CustomerPartition> partitions) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM batch_job_checkpoint WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            stmt.executeUpdate();
+        }
+
+        String sql = "INSERT INTO batch_job_checkpoint (job_name, partition_index, lower_bound, upper_bound, " +
+                     "last_customer_id, status, last_updated) VALUES (?, ?, ?, ?, NULL, ?, NOW())";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (CustomerPartition partition : partitions) {
+                stmt.setString(1, jobName);
+                stmt.setInt(2, partition.getIndex());
+                stmt.setString(3, partition.getLowerBound());
+                stmt.setString(4, partition.getUpperBound());
+                stmt.setString(5, STATUS_PENDING);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Returns true if the job has any stored partitions, finished or not.
+     */
+    public boolean hasCheckpoint(Connection conn, String jobName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM batch_job_checkpoint WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /**
+     * Loads the partitions that have not completed, positioned after their last committed customer.
+     */
+    public List<CustomerPartition> loadUnfinishedPartitions(Connection conn, String jobName) throws SQLException {
+        List<CustomerPartition> partitions = new ArrayList<>();
+        String sql = "SELECT partition_index, lower_bound, upper_bound, last_customer_id " +
+                     "FROM batch_job_checkpoint WHERE job_name = ? AND status <> ? ORDER BY partition_index";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, STATUS_COMPLETED);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(new CustomerPartition(rs.getInt("partition_index"),
+                            rs.getString("lower_bound"), rs.getString("upper_bound"),
+                            rs.getString("last_customer_id")));
+                }
+            }
+        }
+
+        return partitions;
+    }
+
+    /**
+     * Records the last customer committed in a partition.
+     */
+    public void saveProgress(Connection conn, String jobName, int partitionIndex, String lastCustomerId) throws SQLException {
+        String sql = "UPDATE batch_job_checkpoint SET last_customer_id = ?, last_updated = NOW() " +
+                     "WHERE job_name = ? AND partition_index = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, lastCustomerId);
+            stmt.setString(2, jobName);
+            stmt.setInt(3, partitionIndex);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void markCompleted(Connection conn, String jobName, int partitionIndex) throws SQLException {
+        String sql = "UPDATE batch_job_checkpoint SET status = ?, last_updated = NOW() " +
+                     "WHERE job_name = ? AND partition_index = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, STATUS_COMPLETED);
+            stmt.setString(2, jobName);
+            stmt.setInt(3, partitionIndex);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds a failed customer to the retry list, or bumps its attempt count if already there.
+     */
+    public void addRetry(Connection conn, String jobName, String customerId, String error) throws SQLException {
+        String sql = "INSERT INTO batch_job_retry (job_name, customer_id, attempts, last_error, last_failed) " +
+                     "VALUES (?, ?, 1, ?, NOW()) " +
+                     "ON DUPLICATE KEY UPDATE attempts = attempts + 1, last_error = VALUES(last_error), " +
+                     "last_failed = VALUES(last_failed)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, customerId);
+            stmt.setString(3, error != null && error.length() > 255 ? error.substring(0, 255) : error);
+            stmt.executeUpdate();
+        }
+    }
+
+    public List<String> loadRetries(Connection conn, String jobName) throws SQLException {
+        List<String> customerIds = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT customer_id FROM batch_job_retry WHERE job_name = ? ORDER BY customer_id")) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customerIds.add(rs.getString("customer_id"));
+                }
+            }
+        }
+
+        return customerIds;
+    }
+
+    public void removeRetry(Connection conn, String jobName, String customerId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM batch_job_retry WHERE job_name = ? AND customer_id = ?")) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, customerId);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void clearRetries(Connection conn, String jobName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM batch_job_retry WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            stmt.executeUpdate();
+        }
+    }
+
+    // batch_job_state row holding the start of the current run in one mode
+    private static String runKey(String jobName, String mode) {
+        return jobName + "." + mode;
+    }
+}
@@ -2,6 +2,7 @@ package com.vanguard.portal.batch;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -11,8 +12,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Nightly batch job to aggregate customer balances and update summary tables.
@@ -23,7 +33,7 @@ import java.util.List;
  * - Long-running database operations block other processes
  * - Business logic embedded in stored procedures
  * - No progress tracking or restart capability
- * - Single-threaded processing of millions of records
+ * - Sequential mode processes millions of records on a single thread
  *
  * @author Legacy Team
  * @since 2013
@@ -33,9 +43,39 @@ public class BalanceAggregationJob {
 
     private static final Logger logger = Logger.getLogger(BalanceAggregationJob.class);
 
+    public static final String MODE_SEQUENTIAL = "SEQUENTIAL";
+    public static final String MODE_PARTITIONED = "PARTITIONED";
+    public static final String MODE_INCREMENTAL = "INCREMENTAL";
+
+    // Key for this job's rows in the batch_job_state / batch_job_retry tables
+    static final String JOB_NAME = "BALANCE_AGGREGATION";
+
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private BalanceSummaryAggregator balanceSummaryAggregator;
+
+    @Autowired
+    private AggregationCheckpointStore checkpointStore;
+
+    // Execution mode for the nightly run: SEQUENTIAL (default, legacy stored procedure loop),
+    // PARTITIONED (parallel full rebuild) or INCREMENTAL (only customers changed since the
+    // last completed run). Switch with -Dbalance.aggregation.mode=PARTITIONED
+    private String executionMode = MODE_SEQUENTIAL;
+
+    // Number of worker threads; each worker holds one pooled connection for its lifetime
+    private int workerCount = 8;
+
+    // Number of key-range partitions; more partitions than workers evens out skew
+    private int partitionCount = 32;
+
+    // Customers committed per transaction inside a worker (also the cursor page size there)
+    private int commitBatchSize = 500;
+
+    // Customer IDs fetched per keyset page in sequential mode
+    private int customerPageSize = 1000;
+
     /**
      * PERFORMANCE ISSUE: Long-Running Batch Job
      *
@@ -68,8 +108,48 @@ public class BalanceAggregationJob {
      */
     @Scheduled(cron = "0 0 2 * * ?") // Run at 2:00 AM daily
     public void aggregateCustomerBalances() {
+        if (MODE_INCREMENTAL.equalsIgnoreCase(executionMode)) {
+            aggregateCustomerBalancesIncremental();
+        } else if (MODE_PARTITIONED.equalsIgnoreCase(executionMode)) {
+            aggregateCustomerBalancesPartitioned();
+        } else {
+            aggregateCustomerBalancesSequential();
+        }
+    }
+
+    /**
+     * Legacy single-connection loop, still the default execution mode.
+     *
+     * The whole customer range is checkpointed as a single partition, advanced
+     * in the same transaction as each customer, so a failed run can be resumed
+     * with {@link #runManualAggregation(boolean)}.
+     */
+    private void aggregateCustomerBalancesSequential() {
+        logger.info("=== Starting Balance Aggregation Job (sequential) ===");
+
+        CustomerPartition allCustomers = new CustomerPartition(0, null, null);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            checkpointStore.resetPartitions(conn, checkpointName(MODE_SEQUENTIAL),
+                    Collections.singletonList(allCustomers));
+            // A full run starts with an empty retry list, as in the partitioned mode
+            checkpointStore.clearRetries(conn, JOB_NAME);
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Critical error in balance aggregation job", e);
+            return;
+        }
+
+        runSequential(Collections.singletonList(allCustomers));
+    }
+
+    /**
+     * Runs the given sequential checkpoint partition (at most one) through the
+     * stored procedure, one customer per transaction, then retries failed customers.
+     */
+    private void runSequential(List<CustomerPartition> partitions) {
         long startTime = System.currentTimeMillis();
-        logger.info("=== Starting Balance Aggregation Job ===");
+        String checkpoint = checkpointName(MODE_SEQUENTIAL);
 
         Connection conn = null;
         int totalCustomers = 0;
@@ -80,42 +160,57 @@ public class BalanceAggregationJob {
             conn = dataSource.getConnection();
             conn.setAutoCommit(false); // Transaction per customer
 
-            // Get list of all customers to process
-            List<String> customerIds = getAllCustomerIds(conn);
-            totalCustomers = customerIds.size();
+            // Count customers for progress reporting; IDs themselves are paged in below
+            totalCustomers = countActiveCustomers(conn);
 
             logger.info("Processing balance aggregation for " + totalCustomers + " customers");
 
-            // PROBLEM: Single-threaded loop processing millions of customers
-            for (String customerId : customerIds) {
-                try {
-                    // Process one customer at a time
-                    aggregateBalancesForCustomer(conn, customerId);
-                    processedCustomers++;
+            for (CustomerPartition partition : partitions) {
+                CustomerIdCursor cursor = new CustomerIdCursor(conn, partition, customerPageSize);
+                List<String> customerIds;
 
-                    // Commit after each customer (to avoid giant transactions)
-                    conn.commit();
+                // PROBLEM: Single-threaded loop processing millions of customers
+                while (!(customerIds = cursor.nextPage()).isEmpty()) {
+                    for (String customerId : customerIds) {
+                        try {
+                            // Process one customer at a time
+                            aggregateBalancesForCustomer(conn, customerId);
+                            processedCustomers++;
 
-                    // Log progress every 1000 customers
-                    if (processedCustomers % 1000 == 0) {
-                        long elapsed = System.currentTimeMillis() - startTime;
-                        double percentComplete = (processedCustomers * 100.0) / totalCustomers;
-                        logger.info(String.format("Progress: %d/%d customers (%.2f%%) in %d seconds",
-                                processedCustomers, totalCustomers, percentComplete, elapsed / 1000));
-                    }
+                            // Commit after each customer (to avoid giant transactions), with its checkpoint
+                            checkpointStore.saveProgress(conn, checkpoint, partition.getIndex(), customerId);
+                            conn.commit();
+
+                            // Log progress every 1000 customers
+                            if (processedCustomers % 1000 == 0) {
+                                long elapsed = System.currentTimeMillis() - startTime;
+                                double percentComplete = (processedCustomers * 100.0) / totalCustomers;
+                                logger.info(String.format("Progress: %d/%d customers (%.2f%%) in %d seconds",
+                                        processedCustomers, totalCustomers, percentComplete, elapsed / 1000));
+                            }
 
-                } catch (Exception e) {
-                    logger.error("Failed to process customer: " + customerId, e);
-                    failedCustomers++;
-                    conn.rollback(); // Rollback this customer only
+                        } catch (Exception e) {
+                            logger.error("Failed to process customer: " + customerId, e);
+                            failedCustomers++;
+                            conn.rollback(); // Rollback this customer only
+                            checkpointStore.addRetry(conn, JOB_NAME, customerId, e.getMessage());
+                            checkpointStore.saveProgress(conn, checkpoint, partition.getIndex(), customerId);
+                            conn.commit();
+                        }
+                    }
                 }
+
+                checkpointStore.markCompleted(conn, checkpoint, partition.getIndex());
+                conn.commit();
             }
 
+            int stillFailing = retryFailedCustomers(true);
+
             long elapsedTime = System.currentTimeMillis() - startTime;
             logger.info("=== Balance Aggregation Job Completed ===");
             logger.info("Total time: " + (elapsedTime / 1000 / 60) + " minutes");
             logger.info("Processed: " + processedCustomers + " customers");
-            logger.info("Failed: " + failedCustomers + " customers");
+            logger.info("Failed: " + failedCustomers + " customers (" + stillFailing + " still on retry list)");
 
             // Alert if job took too long
             if (elapsedTime > 4 * 60 * 60 * 1000) { // 4 hours
@@ -142,9 +237,441 @@ public class BalanceAggregationJob {
         }
     }
 
+    /**
+     * Partitioned execution mode.
+     *
+     * Splits the active customer IDs into contiguous key ranges and drains them
+     * from a shared queue with a bounded pool of workers. Each worker borrows a
+     * single pooled connection, commits every {@code commitBatchSize} customers
+     * and logs the throughput of every partition it completes.
+     *
+     * The partitions are written to the checkpoint table first and the retry list
+     * is cleared, so a run that dies part-way can be picked up with
+     * {@link #runManualAggregation(boolean)}.
+     */
+    private void aggregateCustomerBalancesPartitioned() {
+        logger.info("=== Starting Balance Aggregation Job (partitioned, " + workerCount + " workers) ===");
+
+        List<CustomerPartition> partitions;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            checkpointStore.startRun(conn, JOB_NAME, MODE_PARTITIONED);
+            partitions = computePartitions(conn, partitionCount);
+            checkpointStore.resetPartitions(conn, checkpointName(MODE_PARTITIONED), partitions);
+            checkpointStore.clearRetries(conn, JOB_NAME);
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Critical error in balance aggregation job", e);
+            return;
+        }
+
+        logger.info("Split active customers into " + partitions.size() + " key-range partitions");
+        runPartitions(partitions);
+    }
+
+    /**
+     * Resumes the last run of the configured execution mode from its checkpoint:
+     * only work that did not complete is processed, starting after the last
+     * committed customer, and the retry list is worked off afterwards. Refuses
+     * to run when that mode has no checkpoint, rather than starting a full run
+     * or picking up another mode's checkpoint. An incremental run keeps no
+     * checkpoint; its watermark only moves on completion, so it is simply run again.
+     */
+    private void resumeCustomerBalances() {
+        if (MODE_INCREMENTAL.equalsIgnoreCase(executionMode)) {
+            logger.info("Incremental runs restart from the last completed run, running it again");
+            aggregateCustomerBalancesIncremental();
+            return;
+        }
+
+        boolean partitioned = MODE_PARTITIONED.equalsIgnoreCase(executionMode);
+        String mode = partitioned ? MODE_PARTITIONED : MODE_SEQUENTIAL;
+        List<CustomerPartition> partitions;
+        try (Connection conn = dataSource.getConnection()) {
+            if (!checkpointStore.hasCheckpoint(conn, checkpointName(mode))) {
+                logger.error("No " + mode + " balance aggregation checkpoint found, nothing to resume");
+                return;
+            }
+            partitions = checkpointStore.loadUnfinishedPartitions(conn, checkpointName(mode));
+        } catch (SQLException e) {
+            logger.error("Unable to load balance aggregation checkpoint", e);
+            return;
+        }
+
+        logger.info("=== Resuming Balance Aggregation Job (" + mode.toLowerCase() + "): "
+                + partitions.size() + " unfinished partitions ===");
+        if (partitioned) {
+            runPartitions(partitions);
+        } else {
+            runSequential(partitions);
+        }
+    }
+
+    /**
+     * Runs the given partitions on the worker pool, then retries failed customers.
+     * When every worker finishes cleanly the run is marked complete, which moves
+     * the watermark used by the incremental mode.
+     */
+    private void runPartitions(List<CustomerPartition> partitions) {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = null;
+        int processedCustomers = 0;
+        int failedCustomers = 0;
+        boolean allWorkersCompleted = true;
+
+        try {
+            if (!partitions.isEmpty()) {
+                Queue<CustomerPartition> pending = new ConcurrentLinkedQueue<>(partitions);
+                int workers = Math.min(workerCount, partitions.size());
+                executor = Executors.newFixedThreadPool(workers);
+
+                List<Future<int[]>> futures = new ArrayList<>();
+                for (int i = 0; i < workers; i++) {
+                    futures.add(executor.submit(new PartitionWorker(pending)));
+                }
+
+                for (Future<int[]> future : futures) {
+                    try {
+                        int[] counts = future.get();
+                        processedCustomers += counts[0];
+                        failedCustomers += counts[1];
+                    } catch (ExecutionException e) {
+                        logger.error("Balance aggregation worker failed", e.getCause());
+                        allWorkersCompleted = false;
+                    }
+                }
+            }
+
+            int stillFailing = retryFailedCustomers(false);
+
+            if (allWorkersCompleted) {
+                markRunCompleted();
+            }
+
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            logger.info("=== Balance Aggregation Job Completed ===");
+            logger.info("Total time: " + (elapsedTime / 1000 / 60) + " minutes");
+            logger.info("Processed: " + processedCustomers + " customers");
+            logger.info("Failed: " + failedCustomers + " customers (" + stillFailing + " still on retry list)");
+            logger.info(String.format("Throughput: %.1f customers/s",
+                    processedCustomers * 1000.0 / Math.max(elapsedTime, 1)));
+
+            if (elapsedTime > 4 * 60 * 60 * 1000) { // 4 hours
+                logger.warn("PERFORMANCE WARNING: Batch job exceeded 4 hours!");
+            }
+
+        } catch (InterruptedException e) {
+            logger.error("Balance aggregation job interrupted", e);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Critical error in balance aggregation job", e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Incremental execution mode.
+     *
+     * Most customers never trade, so instead of rebuilding balance_summary for all
+     * of them this only recomputes customers whose accounts, balances or holdings
+     * have a last_updated at or after the start of the last completed run. A
+     * changed customer left without an active account has its summary zeroed.
+     * Falls back to a full partitioned run when no run has completed yet.
+     */
+    private void aggregateCustomerBalancesIncremental() {
+        long startTime = System.currentTimeMillis();
+        logger.info("=== Starting Balance Aggregation Job (incremental) ===");
+
+        Timestamp since;
+        try (Connection conn = dataSource.getConnection()) {
+            since = checkpointStore.loadLastCompletedRun(conn, JOB_NAME);
+        } catch (SQLException e) {
+            logger.error("Unable to load balance aggregation watermark", e);
+            return;
+        }
+
+        if (since == null) {
+            logger.info("No completed balance aggregation run found, running a full rebuild");
+            aggregateCustomerBalancesPartitioned();
+            return;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+
+            checkpointStore.startRun(conn, JOB_NAME, MODE_INCREMENTAL);
+            conn.commit();
+
+            List<String> changedCustomers = getChangedCustomerIds(conn, since);
+            int totalCustomers = countActiveCustomers(conn);
+            logger.info(String.format("Delta since %s: %d of %d customers changed (%.2f%%)",
+                    since, changedCustomers.size(), totalCustomers,
+                    changedCustomers.size() * 100.0 / Math.max(totalCustomers, 1)));
+
+            int processedCustomers = 0;
+            int failedCustomers = 0;
+
+            for (int from = 0; from < changedCustomers.size(); from += commitBatchSize) {
+                List<String> block = changedCustomers.subList(from,
+                        Math.min(from + commitBatchSize, changedCustomers.size()));
+                try {
+                    balanceSummaryAggregator.aggregateCustomers(conn, block);
+                    conn.commit();
+                    processedCustomers += block.size();
+                } catch (SQLException e) {
+                    logger.warn("Incremental block aggregation failed, retrying per customer", e);
+                    conn.rollback();
+
+                    for (String customerId : block) {
+                        try {
+                            balanceSummaryAggregator.aggregateRange(conn, customerId, customerId);
+                            conn.commit();
+                            processedCustomers++;
+                        } catch (SQLException ex) {
+                            logger.error("Failed to process customer: " + customerId, ex);
+                            failedCustomers++;
+                            conn.rollback();
+                            checkpointStore.addRetry(conn, JOB_NAME, customerId, ex.getMessage());
+                            conn.commit();
+                        }
+                    }
+                }
+            }
+
+            int stillFailing = retryFailedCustomers(false);
+
+            checkpointStore.completeRun(conn, JOB_NAME, MODE_INCREMENTAL);
+            conn.commit();
+
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            // Full-run estimate: same per-customer cost applied to every active customer
+            long estimatedFullRun = processedCustomers > 0
+                    ? elapsedTime * totalCustomers / processedCustomers : elapsedTime;
+            logger.info("=== Balance Aggregation Job Completed ===");
+            logger.info("Total time: " + (elapsedTime / 1000) + " seconds");
+            logger.info("Processed: " + processedCustomers + " customers");
+            logger.info("Failed: " + failedCustomers + " customers (" + stillFailing + " still on retry list)");
+            logger.info("Estimated time saved vs full rebuild: " + ((estimatedFullRun - elapsedTime) / 1000) + " seconds");
+
+        } catch (Exception e) {
+            logger.error("Critical error in incremental balance aggregation job", e);
+        }
+    }
+
+    /**
+     * Customers whose account, balance or holdings rows changed at or after the
+     * given time, in customer_id order. Accounts of any status count: closing an
+     * account changes the customer's totals just as much as a trade does. Deleted
+     * holdings leave no row behind; the holdings delete trigger in schema.sql
+     * touches their account instead.
+     */
+    private List<String> getChangedCustomerIds(Connection conn, Timestamp since) throws SQLException {
+        List<String> customerIds = new ArrayList<>();
+        String sql = "SELECT customer_id FROM accounts WHERE last_updated >= ? " +
+                     "UNION " +
+                     "SELECT a.customer_id FROM balances b " +
+                     "JOIN accounts a ON a.account_number = b.account_number " +
+                     "WHERE b.last_updated >= ? " +
+                     "UNION " +
+                     "SELECT a.customer_id FROM holdings h " +
+                     "JOIN accounts a ON a.account_number = h.account_number " +
+                     "WHERE h.last_updated >= ? " +
+                     "ORDER BY customer_id";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, since);
+            stmt.setTimestamp(2, since);
+            stmt.setTimestamp(3, since);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customerIds.add(rs.getString("customer_id"));
+                }
+            }
+        }
+
+        return customerIds;
+    }
+
+    private void markRunCompleted() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            checkpointStore.completeRun(conn, JOB_NAME, MODE_PARTITIONED);
+            conn.commit();
+        }
+    }
+
+    /**
+     * Worker that keeps one connection and processes partitions until the queue is empty.
+     * Returns {processed, failed} customer counts.
+     */
+    private class PartitionWorker implements Callable<int[]> {
+
+        private final Queue<CustomerPartition> pending;
+
+        PartitionWorker(Queue<CustomerPartition> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public int[] call() throws Exception {
+            int[] totals = new int[2];
+
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+
+                CustomerPartition partition;
+                while ((partition = pending.poll()) != null) {
+                    int[] counts = processPartition(conn, partition);
+                    totals[0] += counts[0];
+                    totals[1] += counts[1];
+                }
+            }
+
+            return totals;
+        }
+    }
+
+    /**
+     * Aggregates every customer in the partition one block of {@code commitBatchSize}
+     * customers at a time, using the set-based {@link BalanceSummaryAggregator}.
+     * The partition checkpoint is advanced in the same transaction as each block.
+     * If a block fails it is rolled back and retried customer by customer, so one
+     * bad customer does not cost the rest of the block; customers that still fail
+     * go to the retry list.
+     */
+    private int[] processPartition(Connection conn, CustomerPartition partition) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        int processed = 0;
+        int failed = 0;
+
+        CustomerIdCursor cursor = new CustomerIdCursor(conn, partition, commitBatchSize);
+        List<String> block;
+
+        while (!(block = cursor.nextPage()).isEmpty()) {
+            String lastCustomerId = block.get(block.size() - 1);
+            try {
+                balanceSummaryAggregator.aggregateRange(conn, block.get(0), lastCustomerId);
+                checkpointStore.saveProgress(conn, checkpointName(MODE_PARTITIONED), partition.getIndex(), lastCustomerId);
+                conn.commit();
+                processed += block.size();
+            } catch (SQLException e) {
+                logger.warn("Block aggregation failed in partition " + partition + ", retrying per customer", e);
+                conn.rollback();
+
+                for (String customerId : block) {
+                    try {
+                        balanceSummaryAggregator.aggregateRange(conn, customerId, customerId);
+                        conn.commit();
+                        processed++;
+                    } catch (SQLException ex) {
+                        logger.error("Failed to process customer: " + customerId, ex);
+                        failed++;
+                        conn.rollback();
+                        checkpointStore.addRetry(conn, JOB_NAME, customerId, ex.getMessage());
+                        conn.commit();
+                    }
+                }
+
+                checkpointStore.saveProgress(conn, checkpointName(MODE_PARTITIONED), partition.getIndex(), lastCustomerId);
+                conn.commit();
+            }
+        }
+
+        checkpointStore.markCompleted(conn, checkpointName(MODE_PARTITIONED), partition.getIndex());
+        conn.commit();
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        logger.info(String.format("Partition %s: %d customers in %d ms (%.1f customers/s), %d failed",
+                partition, processed, elapsed, processed * 1000.0 / Math.max(elapsed, 1), failed));
+
+        return new int[] {processed, failed};
+    }
+
+    /**
+     * Reprocesses every customer on the retry list once. Customers that succeed are
+     * removed from the list; the rest stay on it with their attempt count bumped.
+     *
+     * @param storedProcedure true to retry through sp_aggregate_customer_balance
+     *        (sequential mode), false to use the set-based aggregator
+     * @return number of customers still on the retry list
+     */
+    private int retryFailedCustomers(boolean storedProcedure) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+
+            List<String> customerIds = checkpointStore.loadRetries(conn, JOB_NAME);
+            if (customerIds.isEmpty()) {
+                return 0;
+            }
+
+            logger.info("Retrying " + customerIds.size() + " failed customers");
+            int stillFailing = 0;
+
+            for (String customerId : customerIds) {
+                try {
+                    if (storedProcedure) {
+                        aggregateBalancesForCustomer(conn, customerId);
+                    } else {
+                        balanceSummaryAggregator.aggregateRange(conn, customerId, customerId);
+                    }
+                    checkpointStore.removeRetry(conn, JOB_NAME, customerId);
+                    conn.commit();
+                } catch (SQLException e) {
+                    logger.error("Retry failed for customer: " + customerId, e);
+                    stillFailing++;
+                    conn.rollback();
+                    checkpointStore.addRetry(conn, JOB_NAME, customerId, e.getMessage());
+                    conn.commit();
+                }
+            }
+
+            return stillFailing;
+        }
+    }
+
+    /**
+     * Splits active customer IDs into contiguous ranges of roughly equal size.
+     * Only the boundary IDs are read, not the full ID list.
+     */
+    private List<CustomerPartition> computePartitions(Connection conn, int partitions) throws SQLException {
+        int totalCustomers = countActiveCustomers(conn);
+
+        List<String> boundaries = new ArrayList<>();
+        int step = (int) Math.ceil(totalCustomers / (double) Math.max(partitions, 1));
+        String sql = "SELECT DISTINCT customer_id FROM accounts WHERE status = 'ACTIVE' " +
+                     "ORDER BY customer_id LIMIT 1 OFFSET ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int offset = step; step > 0 && offset < totalCustomers; offset += step) {
+                stmt.setInt(1, offset);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        boundaries.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+
+        List<CustomerPartition> result = new ArrayList<>();
+        String lower = null;
+        for (String boundary : boundaries) {
+            result.add(new CustomerPartition(result.size(), lower, boundary));
+            lower = boundary;
+        }
+        result.add(new CustomerPartition(result.size(), lower, null));
+        return result;
+    }
+
     /**
      * PROBLEM: Business Logic in Stored Procedure
      *
+     * Only used by the SEQUENTIAL mode and its retries; the other modes aggregate through
+     * {@link BalanceSummaryAggregator} instead.
+     *
      * This method calls a stored procedure that contains complex business logic
      * for balance calculations. This creates several issues:
      *
@@ -173,24 +700,22 @@ public class BalanceAggregationJob {
     }
 
     /**
-     * Retrieves all customer IDs that need balance aggregation.
-     * PROBLEM: Loads entire result set into memory (2M+ records).
+     * Counts active customers without materializing their IDs.
      */
-    private List<String> getAllCustomerIds(Connection conn) throws SQLException {
-        List<String> customerIds = new ArrayList<>();
-
-        String sql = "SELECT DISTINCT customer_id FROM accounts WHERE status = 'ACTIVE' ORDER BY customer_id";
+    private int countActiveCustomers(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(DISTINCT customer_id) FROM accounts WHERE status = 'ACTIVE'";
 
         try (PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
-
-            // MEMORY ISSUE: Loading 2M customer IDs into ArrayList
-            while (rs.next()) {
-                customerIds.add(rs.getString("customer_id"));
-            }
+            return rs.next() ? rs.getInt(1) : 0;
         }
+    }
 
-        return customerIds;
+    /**
+     * Key of one execution mode's rows in batch_job_checkpoint.
+     */
+    static String checkpointName(String mode) {
+        return JOB_NAME + "." + mode;
     }
 
     /**
@@ -198,7 +723,47 @@ public class BalanceAggregationJob {
      * Called by operations team when nightly job fails.
      */
     public void runManualAggregation() {
-        logger.warn("Manual balance aggregation triggered");
-        aggregateCustomerBalances();
+        runManualAggregation(false);
+    }
+
+    /**
+     * Manual job trigger that can resume the last run of the configured mode from
+     * its checkpoint, so a failed night only reprocesses its unfinished tail and
+     * the customers on the retry list.
+     *
+     * @param resume true to continue from the checkpoint, false for a full run
+     */
+    public void runManualAggregation(boolean resume) {
+        logger.warn("Manual balance aggregation triggered" + (resume ? " (resume from checkpoint)" : ""));
+        if (resume) {
+            resumeCustomerBalances();
+        } else {
+            aggregateCustomerBalances();
+        }
+    }
+
+    @Value("${balance.aggregation.mode:SEQUENTIAL}") // SEQUENTIAL, PARTITIONED or INCREMENTAL
+    public void setExecutionMode(String executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    @Value("${balance.aggregation.workers:8}")
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    @Value("${balance.aggregation.partitions:32}")
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = Math.max(1, partitionCount);
+    }
+
+    @Value("${balance.aggregation.commitBatchSize:500}")
+    public void setCommitBatchSize(int commitBatchSize) {
+        this.commitBatchSize = Math.max(1, commitBatchSize);
+    }
+
+    @Value("${balance.aggregation.customerPageSize:1000}")
+    public void setCustomerPageSize(int customerPageSize) {
+        this.customerPageSize = Math.max(1, customerPageSize);
     }
 }
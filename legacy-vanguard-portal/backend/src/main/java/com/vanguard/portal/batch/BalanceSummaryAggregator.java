@@ -0,0 +1,167 @@
+package com.vanguard.portal.batch;
+
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Application-side replacement for the sp_aggregate_customer_balance stored procedure.
+ *
+ * Instead of a cursor over accounts with two single-row SELECTs per account and a
+ * temp table per customer, this computes total_cash, total_equity and account_count
+ * for a whole block of customers with one grouped join over accounts, balances and
+ * holdings, then upserts balance_summary with a single JDBC batch.
+ *
+ * Results match the procedure: cash is the sum of current_balance over active
+ * accounts, equity is the sum of holdings market_value over the same accounts,
+ * and total_balance is cash plus equity. Unlike the procedure, a customer in the
+ * block whose last active account was closed has their summary row zeroed
+ * instead of left at the old totals.
+ *
+ * The aggregate is a snapshot, and the online write-through can move a summary
+ * row between the read and the upsert. The existing row is read in the same
+ * snapshot, and the upsert adds whatever cash moved since then on top of the
+ * fresh totals instead of overwriting it.
+ *
+ * The caller owns the connection and the transaction boundary.
+ *
+ * @author Legacy Team
+ * @since 2013
+ */
+@Component
+public class BalanceSummaryAggregator {
+
+    private static final Logger logger = Logger.getLogger(BalanceSummaryAggregator.class);
+
+    // %1$s is replaced with the customer filter, applied to both the holdings subquery and the outer query
+    private static final String AGGREGATE_SQL =
+            "SELECT a.customer_id, " +
+            "       COUNT(*) AS account_count, " +
+            "       IFNULL(SUM(b.current_balance), 0.00) AS total_cash, " +
+            "       IFNULL(SUM(h.equity), 0.00) AS total_equity, " +
+            "       MAX(s.total_cash) AS seen_cash, " +
+            "       MAX(s.total_balance) AS seen_balance " +
+            "FROM accounts a " +
+            "LEFT JOIN balance_summary s ON s.customer_id = a.customer_id " +
+            "LEFT JOIN balances b ON b.account_number = a.account_number " +
+            "LEFT JOIN (SELECT ha.account_number, SUM(hh.market_value) AS equity " +
+            "           FROM accounts ha " +
+            "           JOIN holdings hh ON hh.account_number = ha.account_number " +
+            "           WHERE ha.status = 'ACTIVE' AND ha.customer_id %1$s " +
+            "           GROUP BY ha.account_number) h ON h.account_number = a.account_number " +
+            "WHERE a.status = 'ACTIVE' AND a.customer_id %1$s " +
+            "GROUP BY a.customer_id";
+
+    // Parameters 6 and 7 are the fresh totals minus the row as it was seen with the
+    // aggregate, or NULL if there was no row: cash moved by BalanceDAO.applyBalanceChange
+    // after the aggregate was read is kept on top of the fresh totals, not overwritten
+    private static final String UPSERT_SQL =
+            "INSERT INTO balance_summary (customer_id, total_balance, total_equity, total_cash, " +
+            "account_count, last_aggregated) VALUES (?, ?, ?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "total_balance = IFNULL(total_balance + ?, VALUES(total_balance)), " +
+            "total_equity = VALUES(total_equity), " +
+            "total_cash = IFNULL(total_cash + ?, VALUES(total_cash)), " +
+            "account_count = VALUES(account_count), last_aggregated = VALUES(last_aggregated)";
+
+    // Summary rows in the filter whose customer no longer has an active account, e.g.
+    // after the last one was closed: the aggregate has no row for them to upsert
+    private static final String ZERO_SQL =
+            "UPDATE balance_summary SET total_balance = 0.00, total_equity = 0.00, total_cash = 0.00, " +
+            "account_count = 0, last_aggregated = NOW() " +
+            "WHERE customer_id %1$s AND account_count <> 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM accounts a " +
+            "                WHERE a.customer_id = balance_summary.customer_id AND a.status = 'ACTIVE')";
+
+    /**
+     * Aggregates every active customer whose ID falls in [firstCustomerId, lastCustomerId]
+     * and upserts their balance_summary rows.
+     *
+     * @return number of customers written, not counting zeroed rows
+     */
+    public int aggregateRange(Connection conn, String firstCustomerId, String lastCustomerId) throws SQLException {
+        return aggregate(conn, "BETWEEN ? AND ?", Arrays.asList(firstCustomerId, lastCustomerId));
+    }
+
+    /**
+     * Aggregates an arbitrary, not necessarily contiguous, set of customers.
+     * Used by the incremental mode where the changed customers are scattered.
+     *
+     * @return number of customers written
+     */
+    public int aggregateCustomers(Connection conn, List<String> customerIds) throws SQLException {
+        if (customerIds.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder filter = new StringBuilder("IN (");
+        for (int i = 0; i < customerIds.size(); i++) {
+            filter.append(i == 0 ? "?" : ", ?");
+        }
+        filter.append(")");
+
+        return aggregate(conn, filter.toString(), customerIds);
+    }
+
+    private int aggregate(Connection conn, String customerFilter, List<String> params) throws SQLException {
+        int written = 0;
+        int zeroed;
+
+        try (PreparedStatement select = conn.prepareStatement(String.format(AGGREGATE_SQL, customerFilter));
+             PreparedStatement upsert = conn.prepareStatement(UPSERT_SQL)) {
+
+            // The filter appears twice: once in the holdings subquery, once in the outer query
+            int index = 1;
+            for (int pass = 0; pass < 2; pass++) {
+                for (String param : params) {
+                    select.setString(index++, param);
+                }
+            }
+
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal totalCash = rs.getBigDecimal("total_cash");
+                    BigDecimal totalEquity = rs.getBigDecimal("total_equity");
+                    BigDecimal totalBalance = totalCash.add(totalEquity);
+                    BigDecimal seenCash = rs.getBigDecimal("seen_cash");
+                    BigDecimal seenBalance = rs.getBigDecimal("seen_balance");
+
+                    upsert.setString(1, rs.getString("customer_id"));
+                    upsert.setBigDecimal(2, totalBalance);
+                    upsert.setBigDecimal(3, totalEquity);
+                    upsert.setBigDecimal(4, totalCash);
+                    upsert.setInt(5, rs.getInt("account_count"));
+                    upsert.setBigDecimal(6, seenBalance != null ? totalBalance.subtract(seenBalance) : null);
+                    upsert.setBigDecimal(7, seenCash != null ? totalCash.subtract(seenCash) : null);
+                    upsert.addBatch();
+                    written++;
+                }
+            }
+
+            if (written > 0) {
+                upsert.executeBatch();
+            }
+        }
+
+        try (PreparedStatement zero = conn.prepareStatement(String.format(ZERO_SQL, customerFilter))) {
+            int index = 1;
+            for (String param : params) {
+                zero.setString(index++, param);
+            }
+            zeroed = zero.executeUpdate();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Aggregated " + written + " customers in one set-based pass, zeroed " + zeroed);
+        }
+
+        return written;
+    }
+}
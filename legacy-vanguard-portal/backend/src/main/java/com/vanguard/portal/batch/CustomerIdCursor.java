@@ -0,0 +1,96 @@
+package com.vanguard.portal.batch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset-paged source of active customer IDs, in customer_id order.
+ *
+ * Each call to {@link #nextPage()} runs one indexed range query that starts
+ * after the last ID of the previous page, so only one page of IDs is ever
+ * held in memory and the first page is available immediately, regardless of
+ * how many customers exist. Bounds follow {@link CustomerPartition}: lower
+ * inclusive, upper exclusive, null for open.
+ */
+public class CustomerIdCursor {
+
+    private final Connection conn;
+    private final String upperBound;
+    private final int pageSize;
+
+    private String lastCustomerId;
+    private boolean lowerInclusive;
+    private boolean exhausted;
+
+    public CustomerIdCursor(Connection conn, String lowerBound, String upperBound, int pageSize) {
+        this.conn = conn;
+        this.upperBound = upperBound;
+        this.pageSize = pageSize;
+        this.lastCustomerId = lowerBound;
+        this.lowerInclusive = true;
+    }
+
+    /**
+     * Cursor over a partition, starting after its checkpointed customer when it has one.
+     */
+    public CustomerIdCursor(Connection conn, CustomerPartition partition, int pageSize) {
+        this(conn, partition.getLowerBound(), partition.getUpperBound(), pageSize);
+        if (partition.getResumeAfter() != null) {
+            this.lastCustomerId = partition.getResumeAfter();
+            this.lowerInclusive = false;
+        }
+    }
+
+    /**
+     * Returns the next page of customer IDs, or an empty list once the range is exhausted.
+     */
+    public List<String> nextPage() throws SQLException {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT DISTINCT customer_id FROM accounts WHERE status = 'ACTIVE'");
+        if (lastCustomerId != null) {
+            sql.append(lowerInclusive ? " AND customer_id >= ?" : " AND customer_id > ?");
+        }
+        if (upperBound != null) {
+            sql.append(" AND customer_id < ?");
+        }
+        sql.append(" ORDER BY customer_id LIMIT ?");
+
+        List<String> page = new ArrayList<>(pageSize);
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (lastCustomerId != null) {
+                stmt.setString(index++, lastCustomerId);
+            }
+            if (upperBound != null) {
+                stmt.setString(index++, upperBound);
+            }
+            stmt.setInt(index, pageSize);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(rs.getString("customer_id"));
+                }
+            }
+        }
+
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+        if (!page.isEmpty()) {
+            lastCustomerId = page.get(page.size() - 1);
+            lowerInclusive = false;
+        }
+
+        return page;
+    }
+}
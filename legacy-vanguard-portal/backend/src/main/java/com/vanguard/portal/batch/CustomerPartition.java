@@ -0,0 +1,50 @@
+package com.vanguard.portal.batch;
+
+/**
+ * Contiguous range of customer IDs processed by one worker of the balance
+ * aggregation job. Lower bound is inclusive, upper bound exclusive; a null
+ * bound means the range is open on that side. A partition restored from a
+ * checkpoint also carries the last customer already committed, and processing
+ * resumes right after it.
+ */
+public class CustomerPartition {
+
+    private final int index;
+    private final String lowerBound;
+    private final String upperBound;
+    private final String resumeAfter;
+
+    public CustomerPartition(int index, String lowerBound, String upperBound) {
+        this(index, lowerBound, upperBound, null);
+    }
+
+    public CustomerPartition(int index, String lowerBound, String upperBound, String resumeAfter) {
+        this.index = index;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.resumeAfter = resumeAfter;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getLowerBound() {
+        return lowerBound;
+    }
+
+    public String getUpperBound() {
+        return upperBound;
+    }
+
+    public String getResumeAfter() {
+        return resumeAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " [" + (lowerBound != null ? lowerBound : "-inf") + ", "
+                + (upperBound != null ? upperBound : "+inf") + ")"
+                + (resumeAfter != null ? " after " + resumeAfter : "");
+    }
+}
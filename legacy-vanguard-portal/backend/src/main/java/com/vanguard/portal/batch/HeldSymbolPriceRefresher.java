@@ -0,0 +1,206 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.service.MarketDataService;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps quotes for every held symbol warm during market hours.
+ *
+ * Every cycle the distinct symbol universe from holdings.symbol is pushed
+ * through {@link MarketDataService#refreshQuotes} in provider-sized chunks, so
+ * the quote cache (and the last-known-good prices behind it) stay current and
+ * request paths such as HoldingsServiceImpl.updateHoldingPrices are answered
+ * from memory instead of waiting on the SOAP provider. The refresh interval
+ * should stay below marketdata.quoteCache.ttlMillis.
+ *
+ * The universe is re-read from the database every {@code universeReloadMillis}
+ * rather than every cycle.
+ *
+ * @author Legacy Team
+ * @since 2013
+ */
+@Component
+public class HeldSymbolPriceRefresher {
+
+    private static final Logger logger = Logger.getLogger(HeldSymbolPriceRefresher.class);
+
+    private static final String HELD_SYMBOLS_SQL = "SELECT DISTINCT symbol FROM holdings ORDER BY symbol";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MarketDataService marketDataService;
+
+    // Symbols per GetQuotes call
+    private int chunkSize = 200;
+
+    private long universeReloadMillis = 60000L;
+
+    // Trading session, in exchange local time
+    private ZoneId marketZone = ZoneId.of("America/New_York");
+    private LocalTime marketOpen = LocalTime.of(9, 30);
+    private LocalTime marketClose = LocalTime.of(16, 0);
+
+    private volatile List<String> universe = Collections.emptyList();
+    private volatile long universeLoadedAt;
+
+    // Metrics for the most recent cycle plus running totals
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong totalCycleMillis = new AtomicLong();
+    private volatile long lastCycleMillis;
+    private volatile long lastCycleCompletedAt;
+    private volatile int lastSymbolsRequested;
+    private volatile int lastSymbolsRefreshed;
+
+    @Scheduled(fixedDelayString = "${marketdata.refresher.intervalMillis:5000}")
+    public void refreshHeldSymbols() {
+        if (isMarketOpen()) {
+            refreshAllHeldSymbols();
+        }
+    }
+
+    /**
+     * Runs one refresh cycle over the held symbol universe, whatever the time.
+     *
+     * @return number of symbols the provider priced
+     */
+    public int refreshAllHeldSymbols() {
+        long startTime = System.currentTimeMillis();
+        int refreshed = 0;
+
+        try {
+            List<String> symbols = loadUniverse(startTime);
+
+            for (int from = 0; from < symbols.size(); from += chunkSize) {
+                List<String> chunk = symbols.subList(from, Math.min(from + chunkSize, symbols.size()));
+                refreshed += marketDataService.refreshQuotes(chunk);
+            }
+
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            lastCycleMillis = elapsedTime;
+            lastCycleCompletedAt = System.currentTimeMillis();
+            lastSymbolsRequested = symbols.size();
+            lastSymbolsRefreshed = refreshed;
+            cycles.incrementAndGet();
+            totalCycleMillis.addAndGet(elapsedTime);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Refreshed %d of %d held symbols in %d ms",
+                        refreshed, symbols.size(), elapsedTime));
+            }
+            if (refreshed < symbols.size()) {
+                logger.warn("Price refresh covered " + refreshed + " of " + symbols.size() + " held symbols");
+            }
+
+        } catch (Exception e) {
+            logger.error("Held symbol price refresh failed", e);
+        }
+        return refreshed;
+    }
+
+    /** True during the configured trading session. */
+    public boolean isMarketOpen() {
+        return isMarketOpen(ZonedDateTime.now(marketZone));
+    }
+
+    boolean isMarketOpen(ZonedDateTime now) {
+        DayOfWeek day = now.getDayOfWeek();
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        LocalTime time = now.toLocalTime();
+        return !time.isBefore(marketOpen) && time.isBefore(marketClose);
+    }
+
+    private List<String> loadUniverse(long now) throws SQLException {
+        if (!universe.isEmpty() && now - universeLoadedAt < universeReloadMillis) {
+            return universe;
+        }
+
+        List<String> symbols = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(HELD_SYMBOLS_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                symbols.add(rs.getString("symbol"));
+            }
+        }
+
+        universe = Collections.unmodifiableList(symbols);
+        universeLoadedAt = now;
+        logger.info("Loaded " + symbols.size() + " held symbols for price refresh");
+        return universe;
+    }
+
+    /** Duration of the last refresh cycle in milliseconds. */
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    public double getAverageCycleMillis() {
+        long count = cycles.get();
+        return count == 0 ? 0.0 : totalCycleMillis.get() / (double) count;
+    }
+
+    public long getCycleCount() {
+        return cycles.get();
+    }
+
+    /** Epoch millis when the last cycle finished, 0 if none has run. */
+    public long getLastCycleCompletedAt() {
+        return lastCycleCompletedAt;
+    }
+
+    public int getUniverseSize() {
+        return universe.size();
+    }
+
+    /** Fraction of held symbols priced by the provider in the last cycle. */
+    public double getLastCoverage() {
+        return lastSymbolsRequested == 0 ? 0.0 : lastSymbolsRefreshed / (double) lastSymbolsRequested;
+    }
+
+    @Value("${marketdata.refresher.chunkSize:200}")
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Value("${marketdata.refresher.universeReloadMillis:60000}")
+    public void setUniverseReloadMillis(long universeReloadMillis) {
+        this.universeReloadMillis = universeReloadMillis;
+    }
+
+    @Value("${marketdata.refresher.zone:America/New_York}")
+    public void setMarketZone(String marketZone) {
+        this.marketZone = ZoneId.of(marketZone);
+    }
+
+    @Value("${marketdata.refresher.open:09:30}")
+    public void setMarketOpen(String marketOpen) {
+        this.marketOpen = LocalTime.parse(marketOpen);
+    }
+
+    @Value("${marketdata.refresher.close:16:00}")
+    public void setMarketClose(String marketClose) {
+        this.marketClose = LocalTime.parse(marketClose);
+    }
+}
@@ -0,0 +1,314 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.dao.HoldingsDAO;
+import com.vanguard.portal.service.MarketDataService;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Market-wide revaluation of every holding, driven by symbol instead of customer.
+ *
+ * HoldingsServiceImpl.updateHoldingPrices reprices one customer at a time, so a
+ * widely held symbol is looked up and recomputed once per customer. This job
+ * reads each distinct symbol's price once per tick (from the quote cache kept
+ * warm by {@link HeldSymbolPriceRefresher}) and recomputes current_price,
+ * market_value and gain_loss_pct for all holdings of that symbol with a single
+ * set-based UPDATE. Symbols are split into partitions that are revalued in
+ * parallel, one connection per worker.
+ *
+ * The arithmetic matches updateHoldingPrices: market_value = quantity * price,
+ * gain_loss_pct = round((price - purchase_price) / purchase_price, 4) * 100.
+ * Holdings whose stored price and market value already match the tick are not
+ * rewritten; a NULL price counts as a change. Quotes are fetched in chunks of
+ * {@code quoteChunkSize} symbols, like {@link HeldSymbolPriceRefresher}. Cached
+ * holdings are evicted only for symbols whose UPDATE changed at least one row.
+ *
+ * @author Legacy Team
+ * @since 2013
+ */
+@Component
+public class HoldingsRevaluationJob {
+
+    private static final Logger logger = Logger.getLogger(HoldingsRevaluationJob.class);
+
+    private static final String HELD_SYMBOLS_SQL = "SELECT DISTINCT symbol FROM holdings ORDER BY symbol";
+
+    // Parameters: price, price, price, symbol, price rounded to the column scale, price
+    private static final String REVALUE_SQL =
+            "UPDATE holdings SET " +
+            "  current_price = ?, " +
+            "  market_value = ROUND(quantity * ?, 2), " +
+            "  gain_loss_pct = CASE WHEN purchase_price = 0 THEN 0 " +
+            "                  ELSE ROUND((? - purchase_price) / purchase_price, 4) * 100 END, " +
+            "  last_updated = NOW() " +
+            "WHERE symbol = ? " +
+            "  AND (NOT (current_price <=> ?) OR NOT (market_value <=> ROUND(quantity * ?, 2)))";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MarketDataService marketDataService;
+
+    @Autowired
+    private HeldSymbolPriceRefresher priceRefresher;
+
+    @Autowired
+    private HoldingsDAO holdingsDAO;
+
+    // Number of worker threads; each worker holds one pooled connection for its lifetime
+    private int workerCount = 4;
+
+    // Number of symbol partitions; more partitions than workers evens out skew
+    private int partitionCount = 16;
+
+    // Symbols per GetQuotes call
+    private int quoteChunkSize = 200;
+
+    // Metrics for the most recent run
+    private volatile long lastRunMillis;
+    private volatile int lastHoldingsRevalued;
+    private volatile int lastSymbolsPriced;
+
+    /**
+     * One revaluation per price tick during market hours.
+     */
+    @Scheduled(fixedDelayString = "${holdings.revaluation.intervalMillis:15000}")
+    public void revalueOnTick() {
+        if (priceRefresher.isMarketOpen()) {
+            revalueAllHoldings();
+        }
+    }
+
+    /**
+     * Revalues every holding at the current price of its symbol.
+     *
+     * @return number of holdings updated
+     */
+    public int revalueAllHoldings() {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = null;
+        int revalued = 0;
+
+        try {
+            List<String> symbols = loadHeldSymbols();
+            if (symbols.isEmpty()) {
+                return 0;
+            }
+
+            // Exactly one price lookup per symbol for the whole tick, in provider-sized chunks
+            Map<String, BigDecimal> prices = new HashMap<>();
+            for (int from = 0; from < symbols.size(); from += quoteChunkSize) {
+                List<String> chunk = symbols.subList(from, Math.min(from + quoteChunkSize, symbols.size()));
+                prices.putAll(marketDataService.getStockQuotes(chunk.toArray(new String[0])));
+            }
+
+            Queue<List<String>> pending = new ConcurrentLinkedQueue<>(partition(symbols, partitionCount));
+            int workers = Math.min(workerCount, pending.size());
+            executor = Executors.newFixedThreadPool(workers);
+
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new RevaluationWorker(pending, prices)));
+            }
+
+            for (Future<Integer> future : futures) {
+                try {
+                    revalued += future.get();
+                } catch (ExecutionException e) {
+                    logger.error("Holdings revaluation worker failed", e.getCause());
+                }
+            }
+
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            lastRunMillis = elapsedTime;
+            lastHoldingsRevalued = revalued;
+            lastSymbolsPriced = prices.size();
+
+            logger.info(String.format("Revalued %d holdings across %d of %d symbols in %d ms (%.1f holdings/s)",
+                    revalued, prices.size(), symbols.size(), elapsedTime,
+                    revalued * 1000.0 / Math.max(elapsedTime, 1)));
+
+        } catch (InterruptedException e) {
+            logger.error("Holdings revaluation interrupted", e);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Critical error in holdings revaluation", e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        return revalued;
+    }
+
+    /**
+     * Drains symbol partitions on one connection, one transaction per partition.
+     */
+    private class RevaluationWorker implements Callable<Integer> {
+        private final Queue<List<String>> pending;
+        private final Map<String, BigDecimal> prices;
+
+        RevaluationWorker(Queue<List<String>> pending, Map<String, BigDecimal> prices) {
+            this.pending = pending;
+            this.prices = prices;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            int revalued = 0;
+
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+
+                List<String> symbols;
+                while ((symbols = pending.poll()) != null) {
+                    try {
+                        List<String> changed = new ArrayList<>();
+                        revalued += revaluePartition(conn, symbols, prices, changed);
+                        conn.commit();
+                        if (!changed.isEmpty()) {
+                            holdingsDAO.evictCachedHoldings(changed);
+                        }
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        logger.error("Error revaluing symbols " + symbols.get(0) + ".."
+                                + symbols.get(symbols.size() - 1), e);
+                    }
+                }
+            }
+
+            return revalued;
+        }
+    }
+
+    /**
+     * Revalues one partition in a single batch.
+     *
+     * @param changed receives the symbols whose update touched at least one row
+     * @return number of holdings updated
+     */
+    private int revaluePartition(Connection conn, List<String> symbols, Map<String, BigDecimal> prices,
+                                 List<String> changed) throws SQLException {
+        int revalued = 0;
+        List<String> batched = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(REVALUE_SQL)) {
+            for (String symbol : symbols) {
+                BigDecimal price = prices.get(symbol);
+                if (price == null || price.signum() <= 0) {
+                    continue; // No usable price this tick; keep the stored values
+                }
+
+                stmt.setBigDecimal(1, price);
+                stmt.setBigDecimal(2, price);
+                stmt.setBigDecimal(3, price);
+                stmt.setString(4, symbol);
+                stmt.setBigDecimal(5, price.setScale(2, RoundingMode.HALF_UP));
+                stmt.setBigDecimal(6, price);
+                stmt.addBatch();
+                batched.add(symbol);
+            }
+
+            if (!batched.isEmpty()) {
+                int[] counts = stmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        revalued += counts[i];
+                        changed.add(batched.get(i));
+                    } else if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                        // Driver did not report a count; evict to be safe
+                        changed.add(batched.get(i));
+                    }
+                }
+            }
+        }
+
+        return revalued;
+    }
+
+    private List<String> loadHeldSymbols() throws SQLException {
+        List<String> symbols = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(HELD_SYMBOLS_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                symbols.add(rs.getString("symbol"));
+            }
+        }
+        return symbols;
+    }
+
+    private static List<List<String>> partition(List<String> symbols, int partitions) {
+        int size = Math.max(1, (symbols.size() + partitions - 1) / partitions);
+        List<List<String>> result = new ArrayList<>();
+        for (int from = 0; from < symbols.size(); from += size) {
+            result.add(symbols.subList(from, Math.min(from + size, symbols.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Manual trigger, e.g. after a corporate action or a missed tick.
+     */
+    public void runManualRevaluation() {
+        logger.warn("Manual holdings revaluation triggered");
+        revalueAllHoldings();
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public int getLastHoldingsRevalued() {
+        return lastHoldingsRevalued;
+    }
+
+    public int getLastSymbolsPriced() {
+        return lastSymbolsPriced;
+    }
+
+    /** Holdings revalued per second in the most recent run. */
+    public double getLastHoldingsPerSecond() {
+        return lastHoldingsRevalued * 1000.0 / Math.max(lastRunMillis, 1);
+    }
+
+    @Value("${holdings.revaluation.workers:4}")
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    @Value("${holdings.revaluation.partitions:16}")
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = Math.max(1, partitionCount);
+    }
+
+    @Value("${holdings.revaluation.quoteChunkSize:200}")
+    public void setQuoteChunkSize(int quoteChunkSize) {
+        this.quoteChunkSize = Math.max(1, quoteChunkSize);
+    }
+}
@@ -1,6 +1,7 @@
 package com.vanguard.portal.dao;
 
 import com.vanguard.portal.model.Balance;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -13,6 +14,28 @@ public interface BalanceDAO {
 
     List<Map<String, Object>> getRecentTransactions(String accountNumber, int days);
 
+    /**
+     * Returns one row per active account of the customer with its current balance
+     * and the sum of pending transactions in the last {@code days} days, fetched
+     * in a single query.
+     */
+    List<Map<String, Object>> findSummaryByCustomerId(String customerId, int days);
+
+    /**
+     * Returns the nightly balance_summary totals for a customer together with the
+     * live sum of pending transactions in the last {@code days} days, in one
+     * indexed lookup. Returns null if the customer has no summary row yet.
+     */
+    Map<String, Object> findSummaryTotals(String customerId, int days);
+
+    /**
+     * Adds {@code amount} to the account's current balance and to its customer's
+     * balance_summary row in a single transaction.
+     *
+     * @return false if the account has no balance row
+     */
+    boolean applyBalanceChange(String accountNumber, BigDecimal amount);
+
     void update(Balance balance);
 
     void save(Balance balance);
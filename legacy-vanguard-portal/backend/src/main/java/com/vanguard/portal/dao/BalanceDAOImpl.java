@@ -69,6 +69,123 @@ public class BalanceDAOImpl implements BalanceDAO {
         return transactions;
     }
 
+    @Override
+    public List<Map<String, Object>> findSummaryByCustomerId(String customerId, int days) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String sql = "SELECT a.account_number, a.account_type, a.account_name, " +
+                     "IFNULL(b.current_balance, 0.00) AS current_balance, " +
+                     "IFNULL(p.pending_amount, 0.00) AS pending_amount " +
+                     "FROM accounts a " +
+                     "LEFT JOIN balances b ON b.account_number = a.account_number " +
+                     "LEFT JOIN (SELECT t.account_number, SUM(t.amount) AS pending_amount " +
+                     "           FROM transactions t " +
+                     "           JOIN accounts ta ON ta.account_number = t.account_number " +
+                     "           WHERE ta.customer_id = ? AND t.status = 'PENDING' " +
+                     "           AND t.transaction_date >= DATE_SUB(NOW(), INTERVAL ? DAY) " +
+                     "           GROUP BY t.account_number) p ON p.account_number = a.account_number " +
+                     "WHERE a.customer_id = ? AND a.status = 'ACTIVE' " +
+                     "ORDER BY a.account_number";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, customerId);
+            stmt.setInt(2, days);
+            stmt.setString(3, customerId);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("accountNumber", rs.getString("account_number"));
+                row.put("accountType", rs.getString("account_type"));
+                row.put("accountName", rs.getString("account_name"));
+                row.put("currentBalance", rs.getBigDecimal("current_balance"));
+                row.put("pendingAmount", rs.getBigDecimal("pending_amount"));
+                rows.add(row);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error fetching customer balance summary", e);
+        }
+
+        return rows;
+    }
+
+    @Override
+    public Map<String, Object> findSummaryTotals(String customerId, int days) {
+        String sql = "SELECT s.total_cash, s.account_count, s.last_aggregated, " +
+                     "(SELECT IFNULL(SUM(t.amount), 0.00) FROM transactions t " +
+                     " JOIN accounts a ON a.account_number = t.account_number " +
+                     " WHERE a.customer_id = s.customer_id AND a.status = 'ACTIVE' " +
+                     " AND t.status = 'PENDING' " +
+                     " AND t.transaction_date >= DATE_SUB(NOW(), INTERVAL ? DAY)) AS pending_amount " +
+                     "FROM balance_summary s WHERE s.customer_id = ?";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, days);
+            stmt.setString(2, customerId);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                Map<String, Object> totals = new HashMap<>();
+                totals.put("totalCash", rs.getBigDecimal("total_cash"));
+                totals.put("accountCount", rs.getInt("account_count"));
+                totals.put("lastAggregated", rs.getTimestamp("last_aggregated"));
+                totals.put("pendingAmount", rs.getBigDecimal("pending_amount"));
+                return totals;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error fetching balance summary", e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean applyBalanceChange(String accountNumber, BigDecimal amount) {
+        String balanceSql = "UPDATE balances SET current_balance = current_balance + ?, last_updated = ? " +
+                            "WHERE account_number = ?";
+        // Only active accounts are counted in balance_summary
+        String summarySql = "UPDATE balance_summary SET total_cash = total_cash + ?, total_balance = total_balance + ? " +
+                            "WHERE customer_id = (SELECT a.customer_id FROM accounts a " +
+                            "                     WHERE a.account_number = ? AND a.status = 'ACTIVE')";
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement balanceStmt = conn.prepareStatement(balanceSql);
+                 PreparedStatement summaryStmt = conn.prepareStatement(summarySql)) {
+
+                balanceStmt.setBigDecimal(1, amount);
+                balanceStmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                balanceStmt.setString(3, accountNumber);
+
+                if (balanceStmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+
+                summaryStmt.setBigDecimal(1, amount);
+                summaryStmt.setBigDecimal(2, amount);
+                summaryStmt.setString(3, accountNumber);
+                summaryStmt.executeUpdate();
+
+                conn.commit();
+                return true;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error applying balance change", e);
+        }
+    }
+
     @Override
     public void update(Balance balance) {
         String sql = "UPDATE balances SET current_balance = ?, available_balance = ?, " +
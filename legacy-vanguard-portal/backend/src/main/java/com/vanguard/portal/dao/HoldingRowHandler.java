@@ -0,0 +1,16 @@
+package com.vanguard.portal.dao;
+
+import com.vanguard.portal.model.Holding;
+
+import java.io.IOException;
+
+/**
+ * Receives holdings one row at a time from a streaming DAO query.
+ *
+ * The Holding instance may be reused between calls; copy anything that must
+ * outlive the call.
+ */
+public interface HoldingRowHandler {
+
+    void onHolding(Holding holding) throws IOException;
+}
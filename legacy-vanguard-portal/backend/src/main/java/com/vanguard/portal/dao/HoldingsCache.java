@@ -0,0 +1,235 @@
+package com.vanguard.portal.dao;
+
+import com.vanguard.portal.model.HoldingsSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-customer cache of holdings snapshots with a time-to-live and a maximum size.
+ *
+ * Snapshots are immutable, so one cached instance can be shared by every
+ * reader; callers that need Holding objects get fresh copies from
+ * {@link HoldingsSnapshot#toHoldings()}. Account-to-customer and
+ * symbol-to-customer indexes let writes evict exactly the customers that own
+ * the rows being changed, without scanning the cached snapshots.
+ *
+ * A load that races with an invalidation is not cached: put() is given the
+ * version observed before the load and is ignored if an invalidation happened
+ * since. All access is synchronized on the cache.
+ *
+ * @author Legacy Team
+ * @since 2014
+ */
+public class HoldingsCache {
+
+    private volatile long ttlMillis;
+    private volatile int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private long version;
+    private long footprintBytes;
+
+    // account_number -> customers whose cached snapshot contains it
+    private final Map<String, Set<String>> customersByAccount = new HashMap<>();
+
+    // symbol -> customers whose cached snapshot holds it
+    private final Map<String, Set<String>> customersBySymbol = new HashMap<>();
+
+    private final LinkedHashMap<String, CachedHoldings> entries = new LinkedHashMap<String, CachedHoldings>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedHoldings> eldest) {
+            if (size() > maxSize) {
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public HoldingsCache(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached snapshot, or null if missing or expired.
+     */
+    public synchronized HoldingsSnapshot get(String customerId) {
+        CachedHoldings cached = entries.get(customerId);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt <= ttlMillis) {
+            hits.incrementAndGet();
+            return cached.snapshot;
+        }
+        if (cached != null) {
+            entries.remove(customerId);
+            unindex(customerId, cached);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Version to pass to {@link #put} for a load that starts now. */
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized void put(String customerId, HoldingsSnapshot snapshot, long loadVersion) {
+        if (loadVersion != version) {
+            return; // Invalidated while loading; the snapshot may be stale
+        }
+        CachedHoldings previous = entries.remove(customerId);
+        if (previous != null) {
+            unindex(customerId, previous);
+        }
+
+        CachedHoldings cached = new CachedHoldings(snapshot, System.currentTimeMillis(),
+                snapshot.getAccountNumbers(), snapshot.getSymbols());
+        entries.put(customerId, cached);
+        footprintBytes += snapshot.estimateMemoryBytes();
+        index(customersByAccount, cached.accounts, customerId);
+        index(customersBySymbol, cached.symbols, customerId);
+    }
+
+    /**
+     * Evicts every customer whose cached snapshot contains the account.
+     *
+     * @return true if the account was known to the cache
+     */
+    public synchronized boolean invalidateAccount(String accountNumber) {
+        version++;
+        Set<String> customers = customersByAccount.get(accountNumber);
+        if (customers == null) {
+            return false;
+        }
+        for (String customerId : new ArrayList<>(customers)) {
+            invalidateCustomer(customerId);
+        }
+        return true;
+    }
+
+    public synchronized void invalidateCustomer(String customerId) {
+        version++;
+        CachedHoldings cached = entries.remove(customerId);
+        if (cached != null) {
+            unindex(customerId, cached);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Evicts every customer holding any of the given symbols.
+     */
+    public synchronized void invalidateSymbols(Collection<String> symbols) {
+        version++;
+        for (String symbol : symbols) {
+            Set<String> customers = customersBySymbol.get(symbol);
+            if (customers != null) {
+                for (String customerId : new ArrayList<>(customers)) {
+                    invalidateCustomer(customerId);
+                }
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+        customersByAccount.clear();
+        customersBySymbol.clear();
+        footprintBytes = 0L;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Approximate heap used by the cached snapshots. */
+    public synchronized long getFootprintBytes() {
+        return footprintBytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : hits.get() / (double) total;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private void unindex(String customerId, CachedHoldings cached) {
+        footprintBytes -= cached.snapshot.estimateMemoryBytes();
+        unindex(customersByAccount, cached.accounts, customerId);
+        unindex(customersBySymbol, cached.symbols, customerId);
+    }
+
+    private static void index(Map<String, Set<String>> index, String[] keys, String customerId) {
+        for (String key : keys) {
+            index.computeIfAbsent(key, k -> new HashSet<>()).add(customerId);
+        }
+    }
+
+    private static void unindex(Map<String, Set<String>> index, String[] keys, String customerId) {
+        for (String key : keys) {
+            Set<String> customers = index.get(key);
+            if (customers != null) {
+                customers.remove(customerId);
+                if (customers.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    private static final class CachedHoldings {
+        private final HoldingsSnapshot snapshot;
+        private final long loadedAt;
+        private final String[] accounts;
+        private final String[] symbols;
+
+        private CachedHoldings(HoldingsSnapshot snapshot, long loadedAt, String[] accounts, String[] symbols) {
+            this.snapshot = snapshot;
+            this.loadedAt = loadedAt;
+            this.accounts = accounts;
+            this.symbols = symbols;
+        }
+    }
+}
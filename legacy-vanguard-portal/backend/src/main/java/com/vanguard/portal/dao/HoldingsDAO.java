@@ -1,6 +1,10 @@
 package com.vanguard.portal.dao;
 
 import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.model.HoldingsSnapshot;
+
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -12,9 +16,17 @@ public interface HoldingsDAO {
 
     List<Holding> findByCustomerId(String customerId);
 
+    HoldingsSnapshot findSnapshotByCustomerId(String customerId);
+
+    int streamByCustomerId(String customerId, HoldingRowHandler handler) throws IOException;
+
     List<Holding> searchHoldings(String customerId, String symbolFilter, String accountType);
 
     List<Holding> getTopPerformers(String customerId, int limit);
 
     void save(Holding holding);
+
+    int updatePrices(List<Holding> holdings);
+
+    void evictCachedHoldings(Collection<String> symbols);
 }
@@ -1,18 +1,23 @@
 package com.vanguard.portal.dao;
 
 import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.model.HoldingsSnapshot;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -31,6 +36,12 @@ public class HoldingsDAOImpl implements HoldingsDAO {
     @Autowired
     private DataSource dataSource;
 
+    // Rows per executeBatch/commit in updatePrices
+    private int priceUpdateBatchSize = 500;
+
+    // Per-customer holdings snapshots: 60 second TTL, 5,000 customers by default
+    private final HoldingsCache holdingsCache = new HoldingsCache(60000L, 5000);
+
     /**
      * Retrieves all holdings for a specific account.
      * Uses prepared statements for safe SQL execution.
@@ -65,17 +76,63 @@ public class HoldingsDAOImpl implements HoldingsDAO {
     /**
      * Retrieves holdings by customer ID across all accounts.
      * Provides portfolio-wide view of investments.
+     *
+     * Served from the per-customer snapshot cache; each call gets its own
+     * Holding objects, so callers may modify them freely.
      */
     @Override
     public List<Holding> findByCustomerId(String customerId) {
         logger.info("Fetching holdings for customer: " + customerId);
 
-        List<Holding> holdings = new ArrayList<>();
-        String sql = "SELECT h.* FROM holdings h " +
+        List<Holding> holdings = findSnapshotByCustomerId(customerId).toHoldings();
+
+        logger.info("Found " + holdings.size() + " total holdings for customer " + customerId);
+        return holdings;
+    }
+
+    /**
+     * Returns a customer's holdings as a columnar {@link HoldingsSnapshot},
+     * read through the per-customer {@link HoldingsCache}.
+     */
+    @Override
+    public HoldingsSnapshot findSnapshotByCustomerId(String customerId) {
+        HoldingsSnapshot snapshot = holdingsCache.get(customerId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long version = holdingsCache.version();
+        snapshot = loadSnapshot(customerId);
+        holdingsCache.put(customerId, snapshot, version);
+        return snapshot;
+    }
+
+    /**
+     * Loads a customer's holdings from the database.
+     *
+     * The DECIMAL columns are scaled to integers in SQL and read with getLong,
+     * so no Holding or BigDecimal is created per row; wasNull() keeps NULL
+     * prices and values distinct from zero. The dates are read as DATE and
+     * TIMESTAMP, so they are interpreted in the JVM time zone exactly as in
+     * findByCustomerId.
+     */
+    private HoldingsSnapshot loadSnapshot(String customerId) {
+        logger.info("Loading holdings snapshot for customer: " + customerId);
+
+        String sql = "SELECT h.holding_id, h.account_number, h.symbol, " +
+                     "CAST(h.quantity * 10000 AS SIGNED) AS quantity_units, " +
+                     "CAST(h.purchase_price * 100 AS SIGNED) AS purchase_price_units, " +
+                     "CAST(h.current_price * 100 AS SIGNED) AS current_price_units, " +
+                     "CAST(h.market_value * 100 AS SIGNED) AS market_value_units, " +
+                     "CAST(h.gain_loss_pct * 10000 AS SIGNED) AS gain_loss_pct_units, " +
+                     "h.purchase_date, h.last_updated " +
+                     "FROM holdings h " +
                      "JOIN accounts a ON h.account_number = a.account_number " +
                      "WHERE a.customer_id = ? " +
                      "ORDER BY h.market_value DESC";
 
+        HoldingsSnapshot.Builder builder = new HoldingsSnapshot.Builder();
+
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
@@ -83,17 +140,90 @@ public class HoldingsDAOImpl implements HoldingsDAO {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                holdings.add(mapResultSetToHolding(rs));
+                int nulls = 0;
+                long currentPrice = rs.getLong("current_price_units");
+                if (rs.wasNull()) {
+                    nulls |= HoldingsSnapshot.NULL_CURRENT_PRICE;
+                }
+                long marketValue = rs.getLong("market_value_units");
+                if (rs.wasNull()) {
+                    nulls |= HoldingsSnapshot.NULL_MARKET_VALUE;
+                }
+                long gainLossPct = rs.getLong("gain_loss_pct_units");
+                if (rs.wasNull()) {
+                    nulls |= HoldingsSnapshot.NULL_GAIN_LOSS_PCT;
+                }
+                java.sql.Date purchaseDate = rs.getDate("purchase_date");
+                Timestamp lastUpdated = rs.getTimestamp("last_updated");
+
+                builder.add(rs.getLong("holding_id"),
+                        rs.getString("account_number"),
+                        rs.getString("symbol"),
+                        rs.getLong("quantity_units"),
+                        rs.getLong("purchase_price_units"),
+                        currentPrice,
+                        marketValue,
+                        gainLossPct,
+                        purchaseDate.getTime(),
+                        lastUpdated != null ? lastUpdated.getTime() : 0L,
+                        nulls);
             }
 
-            logger.info("Found " + holdings.size() + " total holdings for customer " + customerId);
+        } catch (SQLException e) {
+            logger.error("Error loading holdings snapshot for customer " + customerId, e);
+            throw new RuntimeException("Database error", e);
+        }
+
+        HoldingsSnapshot snapshot = builder.build();
+        logger.info("Loaded snapshot of " + snapshot.size() + " holdings for customer " + customerId);
+        return snapshot;
+    }
+
+    /**
+     * Streams a customer's holdings to the handler straight from a forward-only,
+     * read-only result set in the same order as findByCustomerId. The fetch size
+     * of Integer.MIN_VALUE makes Connector/J stream rows off the socket one at a
+     * time instead of buffering the whole result, without switching the shared
+     * pool to server-side cursors. Memory use does not depend on the number of
+     * holdings. The connection can run nothing else until the result set is
+     * closed. Bypasses the holdings cache so exports always see committed data.
+     *
+     * One Holding instance is reused for every row.
+     *
+     * @return number of rows streamed
+     * @throws IOException if the handler fails; the cursor is closed
+     */
+    @Override
+    public int streamByCustomerId(String customerId, HoldingRowHandler handler) throws IOException {
+        String sql = "SELECT h.* FROM holdings h " +
+                     "JOIN accounts a ON h.account_number = a.account_number " +
+                     "WHERE a.customer_id = ? " +
+                     "ORDER BY h.market_value DESC";
+
+        int rows = 0;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setString(1, customerId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Holding holding = new Holding();
+                while (rs.next()) {
+                    mapResultSetToHolding(rs, holding);
+                    handler.onHolding(holding);
+                    rows++;
+                }
+            }
 
         } catch (SQLException e) {
-            logger.error("Error fetching holdings for customer " + customerId, e);
+            logger.error("Error streaming holdings for customer " + customerId, e);
             throw new RuntimeException("Database error", e);
         }
 
-        return holdings;
+        return rows;
     }
 
     /**
@@ -233,6 +363,7 @@ public class HoldingsDAOImpl implements HoldingsDAO {
             stmt.setTimestamp(14, new java.sql.Timestamp(new Date().getTime()));
 
             stmt.executeUpdate();
+            invalidateAccount(conn, holding.getAccountNumber());
 
             logger.info("Holding saved successfully");
 
@@ -242,11 +373,147 @@ public class HoldingsDAOImpl implements HoldingsDAO {
         }
     }
 
+    /**
+     * Writes current_price, market_value and gain_loss_pct for existing holdings,
+     * identified by holding_id.
+     *
+     * Uses one connection for the whole list and sends the updates with
+     * addBatch/executeBatch, committing every {@code priceUpdateBatchSize} rows,
+     * instead of one pooled connection and round trip per holding as in save().
+     * A failed chunk is rolled back; chunks already committed stay applied.
+     *
+     * @return number of holdings updated
+     */
+    @Override
+    public int updatePrices(List<Holding> holdings) {
+        if (holdings.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "UPDATE holdings SET current_price = ?, market_value = ?, gain_loss_pct = ?, " +
+                     "last_updated = ? WHERE holding_id = ?";
+
+        long startTime = System.currentTimeMillis();
+        int updated = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                java.sql.Timestamp now = new java.sql.Timestamp(System.currentTimeMillis());
+                int pending = 0;
+
+                for (Holding holding : holdings) {
+                    stmt.setBigDecimal(1, holding.getCurrentPrice());
+                    stmt.setBigDecimal(2, holding.getMarketValue());
+                    stmt.setBigDecimal(3, holding.getGainLossPct());
+                    stmt.setTimestamp(4, now);
+                    stmt.setLong(5, holding.getHoldingId());
+                    stmt.addBatch();
+
+                    if (++pending == priceUpdateBatchSize) {
+                        updated += countUpdated(stmt.executeBatch());
+                        conn.commit();
+                        pending = 0;
+                    }
+                }
+
+                if (pending > 0) {
+                    updated += countUpdated(stmt.executeBatch());
+                    conn.commit();
+                }
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error batch updating prices for " + holdings.size() + " holdings", e);
+            throw new RuntimeException("Database error", e);
+        } finally {
+            // Chunks may have committed even if a later one failed
+            for (Holding holding : holdings) {
+                holdingsCache.invalidateAccount(holding.getAccountNumber());
+            }
+        }
+
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        logger.info("Updated prices for " + updated + " holdings in " + elapsedTime + "ms");
+
+        return updated;
+    }
+
+    /**
+     * Evicts cached holdings of every customer holding one of the symbols.
+     * Called by set-based writers that update holdings by symbol.
+     */
+    @Override
+    public void evictCachedHoldings(Collection<String> symbols) {
+        holdingsCache.invalidateSymbols(symbols);
+    }
+
+    /**
+     * Evicts the customer owning the account. The account index only knows
+     * accounts that already have cached holdings, so for a first holding in an
+     * account the owner is looked up.
+     */
+    private void invalidateAccount(Connection conn, String accountNumber) throws SQLException {
+        if (holdingsCache.invalidateAccount(accountNumber) || holdingsCache.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT customer_id FROM accounts WHERE account_number = ?")) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    holdingsCache.invalidateCustomer(rs.getString("customer_id"));
+                }
+            }
+        }
+    }
+
+    public HoldingsCache getHoldingsCache() {
+        return holdingsCache;
+    }
+
+    @Value("${holdings.cache.ttlMillis:60000}")
+    public void setHoldingsCacheTtlMillis(long ttlMillis) {
+        holdingsCache.setTtlMillis(ttlMillis);
+    }
+
+    @Value("${holdings.cache.maxCustomers:5000}")
+    public void setHoldingsCacheMaxSize(int maxSize) {
+        holdingsCache.setMaxSize(maxSize);
+    }
+
+    private static int countUpdated(int[] counts) {
+        int updated = 0;
+        for (int count : counts) {
+            // The driver may report SUCCESS_NO_INFO for rewritten batches
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Value("${holdings.priceUpdate.batchSize:500}")
+    public void setPriceUpdateBatchSize(int priceUpdateBatchSize) {
+        this.priceUpdateBatchSize = Math.max(1, priceUpdateBatchSize);
+    }
+
     /**
      * Maps database result set to Holding domain object.
      */
     private Holding mapResultSetToHolding(ResultSet rs) throws SQLException {
-        Holding holding = new Holding();
+        return mapResultSetToHolding(rs, new Holding());
+    }
+
+    private Holding mapResultSetToHolding(ResultSet rs, Holding holding) throws SQLException {
         holding.setHoldingId(rs.getLong("holding_id"));
         holding.setAccountNumber(rs.getString("account_number"));
         holding.setSymbol(rs.getString("symbol"));
@@ -32,6 +32,16 @@ public interface MarketDataDAO {
      */
     Map<Date, BigDecimal> getHistoricalPrices(String symbol, Date startDate, Date endDate);
 
+    /**
+     * Batch variant of {@link #getHistoricalPrices(String, Date, Date)}, loaded in one query.
+     *
+     * @param symbols list of ticker symbols
+     * @param startDate start of date range
+     * @param endDate end of date range
+     * @return map of symbol to (date to closing price); symbols without data are absent
+     */
+    Map<String, Map<Date, BigDecimal>> getHistoricalPrices(List<String> symbols, Date startDate, Date endDate);
+
     /**
      * Gets the daily price change for a security.
      *
@@ -57,6 +67,15 @@ public interface MarketDataDAO {
      */
     Double getHistoricalVolatility(String symbol, int periodDays);
 
+    /**
+     * Batch variant of {@link #getHistoricalVolatility(String, int)}.
+     *
+     * @param symbols list of ticker symbols
+     * @param periodDays number of days for calculation
+     * @return map of symbol to annualized volatility; symbols without data are absent
+     */
+    Map<String, Double> getHistoricalVolatilities(List<String> symbols, int periodDays);
+
     /**
      * Gets the sector classification for a security.
      *
@@ -0,0 +1,367 @@
+package com.vanguard.portal.model;
+
+import com.vanguard.portal.util.FixedPoint;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar, read-only view of a set of holdings.
+ *
+ * Each column is a primitive array indexed by row. Money and quantities are
+ * scaled longs at the schema scales (see {@link FixedPoint}); symbols and
+ * account numbers are interned into small tables and referenced by int index.
+ * Totals, top-N and filters run over the arrays without creating a Holding or
+ * BigDecimal per row. {@link #toHoldings()} rebuilds the List&lt;Holding&gt;
+ * view for callers that still need it.
+ *
+ * current_price, market_value and gain_loss_pct are nullable. A NULL is stored
+ * as 0 with a per-row flag: totals and rankings count it as 0, and
+ * {@link #toHolding} gives back null as the row-by-row DAO path does.
+ *
+ * Instances are immutable once built and safe to share between threads.
+ *
+ * @author Legacy Team
+ * @since 2014
+ */
+public class HoldingsSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Scale of cost basis and gain/loss totals: quantity scale + money scale, so no rounding. */
+    public static final int COST_SCALE = FixedPoint.QUANTITY_SCALE + FixedPoint.MONEY_SCALE;
+
+    /** Flags for {@link Builder#add}: nullable columns that were NULL in the row. */
+    public static final int NULL_CURRENT_PRICE = 1;
+    public static final int NULL_MARKET_VALUE = 2;
+    public static final int NULL_GAIN_LOSS_PCT = 4;
+
+    private final int size;
+    private final long[] holdingIds;
+    private final int[] accountIndex;
+    private final int[] symbolIndex;
+    private final long[] quantity;        // scale 4
+    private final long[] purchasePrice;   // scale 2
+    private final long[] currentPrice;    // scale 2
+    private final long[] marketValue;     // scale 2
+    private final long[] gainLossPct;     // scale 4
+    private final long[] purchaseDate;    // epoch millis
+    private final long[] lastUpdated;     // epoch millis, 0 if unknown
+    private final byte[] nulls;           // NULL_* flags
+
+    private final String[] accounts;
+    private final String[] symbols;
+
+    private HoldingsSnapshot(Builder b) {
+        this.size = b.size;
+        this.holdingIds = Arrays.copyOf(b.holdingIds, b.size);
+        this.accountIndex = Arrays.copyOf(b.accountIndex, b.size);
+        this.symbolIndex = Arrays.copyOf(b.symbolIndex, b.size);
+        this.quantity = Arrays.copyOf(b.quantity, b.size);
+        this.purchasePrice = Arrays.copyOf(b.purchasePrice, b.size);
+        this.currentPrice = Arrays.copyOf(b.currentPrice, b.size);
+        this.marketValue = Arrays.copyOf(b.marketValue, b.size);
+        this.gainLossPct = Arrays.copyOf(b.gainLossPct, b.size);
+        this.purchaseDate = Arrays.copyOf(b.purchaseDate, b.size);
+        this.lastUpdated = Arrays.copyOf(b.lastUpdated, b.size);
+        this.nulls = Arrays.copyOf(b.nulls, b.size);
+        this.accounts = b.accounts.toArray(new String[0]);
+        this.symbols = b.symbols.toArray(new String[0]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getSymbol(int row) {
+        return symbols[symbolIndex[row]];
+    }
+
+    public String getAccountNumber(int row) {
+        return accounts[accountIndex[row]];
+    }
+
+    /** Distinct account numbers present in the snapshot. */
+    public String[] getAccountNumbers() {
+        return accounts.clone();
+    }
+
+    /** Distinct symbols present in the snapshot. */
+    public String[] getSymbols() {
+        return symbols.clone();
+    }
+
+    /**
+     * Rough heap size: the primitive columns plus the interned strings, with
+     * typical 64-bit object and array header overheads.
+     */
+    public long estimateMemoryBytes() {
+        long bytes = 16L + 14 * 16L;                 // object + array headers
+        bytes += (long) size * (9 * 8L + 2 * 4L + 1L); // nine long columns, two int columns, null flags
+        for (String account : accounts) {
+            bytes += 8L + 40L + 2L * account.length();
+        }
+        for (String symbol : symbols) {
+            bytes += 8L + 40L + 2L * symbol.length();
+        }
+        return bytes;
+    }
+
+    /** Market value of one row, scale 2. */
+    public long getMarketValue(int row) {
+        return marketValue[row];
+    }
+
+    /** Gain/loss percentage of one row, scale 4. */
+    public long getGainLossPct(int row) {
+        return gainLossPct[row];
+    }
+
+    /** Sum of market_value, scale 2. */
+    public long totalMarketValue() {
+        long total = 0L;
+        for (int i = 0; i < size; i++) {
+            total += marketValue[i];
+        }
+        return total;
+    }
+
+    /** Sum of quantity * purchase_price, exact at scale 6. */
+    public long totalCostBasis() {
+        long total = 0L;
+        for (int i = 0; i < size; i++) {
+            total += Math.multiplyExact(quantity[i], purchasePrice[i]);
+        }
+        return total;
+    }
+
+    /** Market value minus cost basis, exact at scale 6. */
+    public long totalGainLoss() {
+        return FixedPoint.rescale(totalMarketValue(), FixedPoint.MONEY_SCALE, COST_SCALE) - totalCostBasis();
+    }
+
+    /**
+     * Rows of the n largest positions by market value, largest first.
+     */
+    public int[] topByMarketValue(int n) {
+        return topN(marketValue, n);
+    }
+
+    /**
+     * Rows of the n best performers by gain/loss percentage, best first.
+     */
+    public int[] topByGainLossPct(int n) {
+        return topN(gainLossPct, n);
+    }
+
+    /**
+     * Rows whose symbol equals the given symbol. The comparison runs on the
+     * interned index, so each row costs one int compare.
+     */
+    public int[] filterBySymbol(String symbol) {
+        return filter(symbolIndex, indexOf(symbols, symbol));
+    }
+
+    public int[] filterByAccount(String accountNumber) {
+        return filter(accountIndex, indexOf(accounts, accountNumber));
+    }
+
+    /** Market value per symbol, scale 2. */
+    public Map<String, Long> marketValueBySymbol() {
+        long[] totals = new long[symbols.length];
+        for (int i = 0; i < size; i++) {
+            totals[symbolIndex[i]] += marketValue[i];
+        }
+        Map<String, Long> bySymbol = new HashMap<>();
+        for (int s = 0; s < symbols.length; s++) {
+            bySymbol.put(symbols[s], totals[s]);
+        }
+        return bySymbol;
+    }
+
+    public Holding toHolding(int row) {
+        Holding holding = new Holding();
+        holding.setHoldingId(holdingIds[row]);
+        holding.setAccountNumber(getAccountNumber(row));
+        holding.setSymbol(getSymbol(row));
+        holding.setQuantity(FixedPoint.toBigDecimal(quantity[row], FixedPoint.QUANTITY_SCALE));
+        holding.setPurchasePrice(FixedPoint.toBigDecimal(purchasePrice[row], FixedPoint.MONEY_SCALE));
+        holding.setCurrentPrice(isNull(row, NULL_CURRENT_PRICE)
+                ? null : FixedPoint.toBigDecimal(currentPrice[row], FixedPoint.MONEY_SCALE));
+        holding.setMarketValue(isNull(row, NULL_MARKET_VALUE)
+                ? null : FixedPoint.toBigDecimal(marketValue[row], FixedPoint.MONEY_SCALE));
+        holding.setGainLossPct(isNull(row, NULL_GAIN_LOSS_PCT)
+                ? null : FixedPoint.toBigDecimal(gainLossPct[row], FixedPoint.PERCENT_SCALE));
+        holding.setPurchaseDate(new java.sql.Date(purchaseDate[row]));
+        holding.setLastUpdated(lastUpdated[row] == 0L ? null : new java.sql.Timestamp(lastUpdated[row]));
+        return holding;
+    }
+
+    private boolean isNull(int row, int column) {
+        return (nulls[row] & column) != 0;
+    }
+
+    /**
+     * Materializes the rows as Holding objects, in snapshot order.
+     */
+    public List<Holding> toHoldings() {
+        List<Holding> holdings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            holdings.add(toHolding(i));
+        }
+        return holdings;
+    }
+
+    public List<Holding> toHoldings(int[] rows) {
+        List<Holding> holdings = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            holdings.add(toHolding(row));
+        }
+        return holdings;
+    }
+
+    private int[] topN(long[] column, int n) {
+        int count = Math.min(n, size);
+        int[] top = new int[count];
+        int filled = 0;
+
+        // Insertion into a small sorted array; n is a page-sized number
+        for (int i = 0; i < size; i++) {
+            long value = column[i];
+            if (filled == count && (count == 0 || value <= column[top[count - 1]])) {
+                continue;
+            }
+            int pos = filled < count ? filled++ : count - 1;
+            while (pos > 0 && column[top[pos - 1]] < value) {
+                top[pos] = top[pos - 1];
+                pos--;
+            }
+            top[pos] = i;
+        }
+        return top;
+    }
+
+    private int[] filter(int[] column, int index) {
+        if (index < 0) {
+            return new int[0];
+        }
+        int[] rows = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (column[i] == index) {
+                rows[count++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int indexOf(String[] table, String value) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accumulates rows into growable primitive columns.
+     */
+    public static class Builder {
+        private int size;
+        private long[] holdingIds;
+        private int[] accountIndex;
+        private int[] symbolIndex;
+        private long[] quantity;
+        private long[] purchasePrice;
+        private long[] currentPrice;
+        private long[] marketValue;
+        private long[] gainLossPct;
+        private long[] purchaseDate;
+        private long[] lastUpdated;
+        private byte[] nulls;
+
+        private final List<String> accounts = new ArrayList<>();
+        private final List<String> symbols = new ArrayList<>();
+        private final Map<String, Integer> accountIds = new HashMap<>();
+        private final Map<String, Integer> symbolIds = new HashMap<>();
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(expectedRows, 1);
+            holdingIds = new long[capacity];
+            accountIndex = new int[capacity];
+            symbolIndex = new int[capacity];
+            quantity = new long[capacity];
+            purchasePrice = new long[capacity];
+            currentPrice = new long[capacity];
+            marketValue = new long[capacity];
+            gainLossPct = new long[capacity];
+            purchaseDate = new long[capacity];
+            lastUpdated = new long[capacity];
+            nulls = new byte[capacity];
+        }
+
+        /**
+         * Adds one row. Amounts are scaled longs: quantity scale 4, prices and
+         * market value scale 2, gain/loss percentage scale 4; dates are epoch millis.
+         * {@code nullColumns} is a combination of the NULL_* flags, 0 if none.
+         */
+        public Builder add(long holdingId, String accountNumber, String symbol, long quantity,
+                           long purchasePrice, long currentPrice, long marketValue, long gainLossPct,
+                           long purchaseDate, long lastUpdated, int nullColumns) {
+            if (size == holdingIds.length) {
+                grow();
+            }
+            this.holdingIds[size] = holdingId;
+            this.accountIndex[size] = intern(accountNumber, accounts, accountIds);
+            this.symbolIndex[size] = intern(symbol, symbols, symbolIds);
+            this.quantity[size] = quantity;
+            this.purchasePrice[size] = purchasePrice;
+            this.currentPrice[size] = currentPrice;
+            this.marketValue[size] = marketValue;
+            this.gainLossPct[size] = gainLossPct;
+            this.purchaseDate[size] = purchaseDate;
+            this.lastUpdated[size] = lastUpdated;
+            this.nulls[size] = (byte) nullColumns;
+            size++;
+            return this;
+        }
+
+        public HoldingsSnapshot build() {
+            return new HoldingsSnapshot(this);
+        }
+
+        private static int intern(String value, List<String> table, Map<String, Integer> ids) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = table.size();
+                table.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        private void grow() {
+            int capacity = holdingIds.length * 2;
+            holdingIds = Arrays.copyOf(holdingIds, capacity);
+            accountIndex = Arrays.copyOf(accountIndex, capacity);
+            symbolIndex = Arrays.copyOf(symbolIndex, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            purchasePrice = Arrays.copyOf(purchasePrice, capacity);
+            currentPrice = Arrays.copyOf(currentPrice, capacity);
+            marketValue = Arrays.copyOf(marketValue, capacity);
+            gainLossPct = Arrays.copyOf(gainLossPct, capacity);
+            purchaseDate = Arrays.copyOf(purchaseDate, capacity);
+            lastUpdated = Arrays.copyOf(lastUpdated, capacity);
+            nulls = Arrays.copyOf(nulls, capacity);
+        }
+    }
+}
@@ -10,6 +10,13 @@ public interface BalanceService {
 
     Map<String, Object> getCustomerAccountSummary(String customerId);
 
+    /**
+     * Summary-first read of a customer's totalBalance and accountCount, served
+     * from balance_summary plus the live pending-transaction delta. Falls back
+     * to the live account summary when no summary row exists yet.
+     */
+    Map<String, Object> getCustomerBalanceTotals(String customerId);
+
     BigDecimal calculateTotalPortfolioValue(String customerId);
 
     Map<String, Object> getAccountBalanceDetails(String accountNumber);
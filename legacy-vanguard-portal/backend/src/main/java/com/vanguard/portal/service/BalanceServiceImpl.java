@@ -1,8 +1,6 @@
 package com.vanguard.portal.service;
 
-import com.vanguard.portal.dao.AccountDAO;
 import com.vanguard.portal.dao.BalanceDAO;
-import com.vanguard.portal.model.Account;
 import com.vanguard.portal.model.Balance;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,8 +24,8 @@ public class BalanceServiceImpl implements BalanceService {
 
     private static final Logger logger = Logger.getLogger(BalanceServiceImpl.class);
 
-    @Autowired
-    private AccountDAO accountDAO;
+    // Window used when folding pending transactions into the displayed balance
+    private static final int PENDING_LOOKBACK_DAYS = 30;
 
     @Autowired
     private BalanceDAO balanceDAO;
@@ -36,6 +34,10 @@ public class BalanceServiceImpl implements BalanceService {
      * Retrieves customer account summary including total balance across all accounts.
      * Used by the dashboard and accounts overview page.
      *
+     * Accounts, balances and pending-transaction sums come back from a single
+     * set-based query, so the number of database round trips stays at one no
+     * matter how many accounts the customer holds.
+     *
      * @param customerId the customer identifier
      * @return map containing account details and balances
      */
@@ -44,20 +46,21 @@ public class BalanceServiceImpl implements BalanceService {
         logger.info("Fetching account summary for customer: " + customerId);
 
         Map<String, Object> summary = new HashMap<>();
-        List<Account> accounts = accountDAO.findByCustomerId(customerId);
+        List<Map<String, Object>> rows = balanceDAO.findSummaryByCustomerId(customerId, PENDING_LOOKBACK_DAYS);
 
         BigDecimal totalBalance = BigDecimal.ZERO;
         List<Map<String, Object>> accountDetails = new ArrayList<>();
 
-        // Process each account and calculate balances
-        for (Account account : accounts) {
+        for (Map<String, Object> row : rows) {
             Map<String, Object> accountInfo = new HashMap<>();
-            accountInfo.put("accountNumber", account.getAccountNumber());
-            accountInfo.put("accountType", account.getAccountType());
-            accountInfo.put("accountName", account.getAccountName());
-
-            // Calculate account balance
-            BigDecimal accountBalance = calculateAccountBalance(account.getAccountNumber());
+            accountInfo.put("accountNumber", row.get("accountNumber"));
+            accountInfo.put("accountType", row.get("accountType"));
+            accountInfo.put("accountName", row.get("accountName"));
+
+            // Current balance plus pending transactions not yet reflected
+            BigDecimal currentBalance = (BigDecimal) row.get("currentBalance");
+            BigDecimal pendingAmount = (BigDecimal) row.get("pendingAmount");
+            BigDecimal accountBalance = currentBalance.add(pendingAmount);
             accountInfo.put("balance", accountBalance);
             totalBalance = totalBalance.add(accountBalance);
 
@@ -66,47 +69,46 @@ public class BalanceServiceImpl implements BalanceService {
 
         summary.put("accounts", accountDetails);
         summary.put("totalBalance", totalBalance);
-        summary.put("accountCount", accounts.size());
+        summary.put("accountCount", rows.size());
 
-        logger.info("Retrieved " + accounts.size() + " accounts for customer " + customerId);
+        logger.info("Retrieved " + rows.size() + " accounts for customer " + customerId);
         return summary;
     }
 
     /**
-     * PERFORMANCE ISSUE: N+1 Query Problem
-     *
-     * This method is called in a loop for each account (see lines 51-63 above).
-     * For a customer with 10 accounts, this results in:
-     *   - 1 query to get all accounts
-     *   - 10 queries to get balances (one per account)
-     *   - 10 queries to get transactions (one per account)
-     * Total: 21 database queries instead of 3!
-     *
-     * IMPACT: Dashboard load time increases from 200ms to 3+ seconds for customers
-     * with multiple accounts. Database connection pool exhaustion during peak hours.
+     * Summary-first totals for callers that need the headline figures without
+     * the account list, such as {@link #calculateTotalPortfolioValue}. Pages that
+     * also show the accounts take the totals from {@link #getCustomerAccountSummary}
+     * instead, so the headline and the list come from the same read.
      *
-     * RECOMMENDED FIX: Use batch queries or JOIN operations to fetch all balances
-     * in a single query, or implement a cached materialized view.
+     * balance_summary is rebuilt nightly and kept current during the day by the
+     * write-through in {@link #updateAccountBalance}, so only the pending
+     * transactions need to be added live. This is one indexed lookup by
+     * customer_id instead of a pass over every account.
      */
-    private BigDecimal calculateAccountBalance(String accountNumber) {
-        // N+1 Query #1: Fetching balance for individual account
-        Balance balance = balanceDAO.findByAccountNumber(accountNumber);
-        BigDecimal currentBalance = balance != null ? balance.getCurrentBalance() : BigDecimal.ZERO;
-
-        // N+1 Query #2: Fetching recent transactions for each account
-        // This is particularly expensive as it scans the transactions table
-        List<Map<String, Object>> recentTransactions = balanceDAO.getRecentTransactions(accountNumber, 30);
-
-        // Apply transaction adjustments (pending transactions not yet reflected)
-        for (Map<String, Object> transaction : recentTransactions) {
-            String status = (String) transaction.get("status");
-            if ("PENDING".equals(status)) {
-                BigDecimal amount = (BigDecimal) transaction.get("amount");
-                currentBalance = currentBalance.add(amount);
-            }
+    @Override
+    public Map<String, Object> getCustomerBalanceTotals(String customerId) {
+        Map<String, Object> summaryTotals = balanceDAO.findSummaryTotals(customerId, PENDING_LOOKBACK_DAYS);
+
+        if (summaryTotals == null) {
+            logger.info("No balance summary for customer " + customerId + ", computing totals live");
+            Map<String, Object> summary = getCustomerAccountSummary(customerId);
+            Map<String, Object> totals = new HashMap<>();
+            totals.put("totalBalance", summary.get("totalBalance"));
+            totals.put("accountCount", summary.get("accountCount"));
+            totals.put("source", "LIVE");
+            return totals;
         }
 
-        return currentBalance;
+        BigDecimal totalCash = (BigDecimal) summaryTotals.get("totalCash");
+        BigDecimal pendingAmount = (BigDecimal) summaryTotals.get("pendingAmount");
+
+        Map<String, Object> totals = new HashMap<>();
+        totals.put("totalBalance", totalCash.add(pendingAmount));
+        totals.put("accountCount", summaryTotals.get("accountCount"));
+        totals.put("lastAggregated", summaryTotals.get("lastAggregated"));
+        totals.put("source", "SUMMARY");
+        return totals;
     }
 
     /**
@@ -117,8 +119,8 @@ public class BalanceServiceImpl implements BalanceService {
     public BigDecimal calculateTotalPortfolioValue(String customerId) {
         logger.info("Calculating total portfolio value for customer: " + customerId);
 
-        Map<String, Object> summary = getCustomerAccountSummary(customerId);
-        BigDecimal totalBalance = (BigDecimal) summary.get("totalBalance");
+        Map<String, Object> totals = getCustomerBalanceTotals(customerId);
+        BigDecimal totalBalance = (BigDecimal) totals.get("totalBalance");
 
         // Additional calculations for investment accounts would go here
         // (simplified for this legacy system)
@@ -154,27 +156,26 @@ public class BalanceServiceImpl implements BalanceService {
     /**
      * Updates account balance after transaction processing.
      * Called by the transaction processing system.
+     *
+     * The balance and the customer's balance_summary row are adjusted in the same
+     * transaction so summary-first reads stay current between nightly runs.
      */
     @Override
     public void updateAccountBalance(String accountNumber, BigDecimal amount, String transactionType) {
         logger.info("Updating balance for account " + accountNumber + " with amount " + amount);
 
-        Balance balance = balanceDAO.findByAccountNumber(accountNumber);
-        if (balance == null) {
-            logger.error("Cannot update balance - account not found: " + accountNumber);
-            throw new IllegalArgumentException("Account not found: " + accountNumber);
-        }
-
-        // Update balance based on transaction type
-        BigDecimal newBalance = balance.getCurrentBalance();
+        // Signed change based on transaction type
+        BigDecimal change = BigDecimal.ZERO;
         if ("CREDIT".equals(transactionType)) {
-            newBalance = newBalance.add(amount);
+            change = amount;
         } else if ("DEBIT".equals(transactionType)) {
-            newBalance = newBalance.subtract(amount);
+            change = amount.negate();
         }
 
-        balance.setCurrentBalance(newBalance);
-        balanceDAO.update(balance);
+        if (!balanceDAO.applyBalanceChange(accountNumber, change)) {
+            logger.error("Cannot update balance - account not found: " + accountNumber);
+            throw new IllegalArgumentException("Account not found: " + accountNumber);
+        }
 
         logger.info("Balance updated successfully for account: " + accountNumber);
     }
@@ -0,0 +1,142 @@
+package com.vanguard.portal.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Correlated normal daily returns drawn through a Cholesky factor of the
+ * correlation matrix of the distinct symbols in a portfolio. Callers sum lots
+ * of the same symbol into one exposure first: repeated rows would make the
+ * matrix singular and grow the per-scenario cost with the square of the lot count.
+ *
+ * The matrix is factored once at construction into a packed lower-triangular
+ * array (row i starts at i*(i+1)/2). Each scenario draws n independent normals
+ * z and returns dailyVol[i] * (L z)[i]; the product is computed in place from
+ * the last row up, so no scratch array is needed per scenario.
+ *
+ * Historical correlation matrices are often not positive definite (short or
+ * misaligned histories). Before factoring, entries
+ * are symmetrized, NaN is treated as 0, off-diagonals are clamped to [-1, 1]
+ * and the diagonal is set to 1. If the factorization still fails, a jitter
+ * (doubled on each attempt) is added to the diagonal and the factorization
+ * retried; the jitter used is available from {@link #getJitter()}.
+ *
+ * @author Legacy Systems Team
+ * @since 2004
+ */
+public class CorrelatedNormalScenarios implements ScenarioGenerator {
+
+    private static final double INITIAL_JITTER = 1e-10;
+    private static final double MAX_JITTER = 1.0;
+
+    private final int n;
+    private final double[] lower;
+    private final double[] dailyVolatility;
+    private final double jitter;
+
+    /**
+     * @param correlation n x n correlation matrix of the symbols
+     * @param annualVolatility annualized volatility per symbol
+     */
+    public CorrelatedNormalScenarios(double[][] correlation, double[] annualVolatility) {
+        if (correlation.length != annualVolatility.length) {
+            throw new IllegalArgumentException("Correlation matrix is " + correlation.length
+                    + " wide for " + annualVolatility.length + " symbols");
+        }
+        this.n = annualVolatility.length;
+        this.dailyVolatility = new double[n];
+        double scale = 1.0 / Math.sqrt(252.0);
+        for (int i = 0; i < n; i++) {
+            dailyVolatility[i] = annualVolatility[i] * scale;
+        }
+
+        double[] packed = sanitize(correlation);
+        this.lower = new double[packed.length];
+
+        double added = 0.0;
+        while (!cholesky(packed, added, lower)) {
+            added = added == 0.0 ? INITIAL_JITTER : added * 2.0;
+            if (added > MAX_JITTER) {
+                throw new IllegalArgumentException("Correlation matrix could not be factored");
+            }
+        }
+        this.jitter = added;
+    }
+
+    @Override
+    public void nextScenario(SplittableRandom rng, double[] returns) {
+        for (int i = 0; i < n; i++) {
+            returns[i] = MonteCarloVarEngine.nextGaussian(rng);
+        }
+        // Row i of L z only reads z[0..i], so overwriting from the bottom is safe
+        for (int i = n - 1; i >= 0; i--) {
+            int row = i * (i + 1) / 2;
+            double sum = 0.0;
+            for (int j = 0; j <= i; j++) {
+                sum += lower[row + j] * returns[j];
+            }
+            returns[i] = sum * dailyVolatility[i];
+        }
+    }
+
+    /** Diagonal jitter that was needed to factor the matrix, 0 if none. */
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getSymbolCount() {
+        return n;
+    }
+
+    /**
+     * Packed lower triangle of a cleaned-up copy of the matrix.
+     */
+    private double[] sanitize(double[][] correlation) {
+        double[] packed = new double[n * (n + 1) / 2];
+        for (int i = 0; i < n; i++) {
+            int row = i * (i + 1) / 2;
+            for (int j = 0; j < i; j++) {
+                double value = 0.5 * (correlation[i][j] + correlation[j][i]);
+                if (Double.isNaN(value)) {
+                    value = 0.0;
+                }
+                packed[row + j] = Math.max(-1.0, Math.min(1.0, value));
+            }
+            packed[row + i] = 1.0;
+        }
+        return packed;
+    }
+
+    /**
+     * Cholesky-Banachiewicz on packed storage, with {@code jitter} added to the
+     * diagonal and the result rescaled so that L L^T keeps a unit diagonal.
+     *
+     * @return false if a pivot was not positive
+     */
+    private boolean cholesky(double[] a, double jitter, double[] l) {
+        double norm = 1.0 / Math.sqrt(1.0 + jitter);
+        for (int i = 0; i < n; i++) {
+            int rowI = i * (i + 1) / 2;
+            for (int j = 0; j <= i; j++) {
+                int rowJ = j * (j + 1) / 2;
+                double sum = a[rowI + j] + (i == j ? jitter : 0.0);
+                for (int k = 0; k < j; k++) {
+                    sum -= l[rowI + k] * l[rowJ + k];
+                }
+                if (i == j) {
+                    if (!(sum > 0.0)) {
+                        return false;
+                    }
+                    l[rowI + i] = Math.sqrt(sum);
+                } else {
+                    l[rowI + j] = sum / l[rowJ + j];
+                }
+            }
+        }
+        if (jitter > 0.0) {
+            for (int k = 0; k < l.length; k++) {
+                l[k] *= norm;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package com.vanguard.portal.service;
+
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * In-memory correlation matrix over daily return series.
+ *
+ * Close-price histories loaded once are aligned on the union of their dates
+ * and turned into simple daily returns; a return is NaN where either of its
+ * two closes is missing. Each pair is correlated over the days both series
+ * have a return, like the date join of the old per-pair SQL. Only the upper
+ * triangle is computed, one fork/join task per row, and mirrored.
+ *
+ * @author Legacy Systems Team
+ * @since 2004
+ */
+public class CorrelationEngine {
+
+    private static final Logger logger = Logger.getLogger(CorrelationEngine.class);
+
+    // Fewer overlapping returns than this give a correlation of 0
+    private static final int MIN_OBSERVATIONS = 2;
+
+    private final ForkJoinPool pool;
+
+    public CorrelationEngine(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * Daily return series aligned on a common date axis.
+     *
+     * @param prices closing prices per series, by date
+     * @return one row per series, one column per date after the first; NaN where unknown
+     */
+    public static double[][] toReturnSeries(List<Map<Date, BigDecimal>> prices) {
+        return toReturnSeries(prices, dateAxis(prices));
+    }
+
+    /**
+     * Sorted union of the dates in the given price series.
+     */
+    public static Date[] dateAxis(Collection<Map<Date, BigDecimal>> prices) {
+        TreeSet<Date> dates = new TreeSet<>();
+        for (Map<Date, BigDecimal> series : prices) {
+            if (series != null) {
+                dates.addAll(series.keySet());
+            }
+        }
+        return dates.toArray(new Date[0]);
+    }
+
+    /**
+     * Daily return series on a given date axis; closes on dates not on the axis are ignored.
+     */
+    public static double[][] toReturnSeries(List<Map<Date, BigDecimal>> prices, Date[] axis) {
+        int days = Math.max(axis.length - 1, 0);
+
+        double[][] returns = new double[prices.size()][days];
+        for (int s = 0; s < returns.length; s++) {
+            Map<Date, BigDecimal> series = prices.get(s);
+            double previous = close(series, axis.length > 0 ? axis[0] : null);
+            for (int d = 0; d < days; d++) {
+                double current = close(series, axis[d + 1]);
+                returns[s][d] = current / previous - 1.0; // NaN propagates from missing closes
+                previous = current;
+            }
+        }
+        return returns;
+    }
+
+    /**
+     * Correlation matrix of the given return series, with a unit diagonal.
+     */
+    public double[][] correlationMatrix(final double[][] returns) {
+        final int n = returns.length;
+        final double[][] matrix = new double[n][n];
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int row = i;
+            tasks.add(pool.submit(() -> correlateRow(returns, matrix, row)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Correlated " + n + " series (" + (long) n * (n - 1) / 2 + " pairs) on "
+                    + pool.getParallelism() + " threads");
+        }
+        return matrix;
+    }
+
+    /**
+     * Correlations of each of {@code rows} against each of {@code columns}, one
+     * task per row. Used to extend an existing matrix by a few series.
+     */
+    public double[][] crossCorrelation(final double[][] rows, final double[][] columns) {
+        final double[][] result = new double[rows.length][columns.length];
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            final int row = i;
+            tasks.add(pool.submit(() -> {
+                for (int j = 0; j < columns.length; j++) {
+                    result[row][j] = correlate(rows[row], columns[j]);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return result;
+    }
+
+    /**
+     * Sample standard deviation over the known values, 0 if fewer than two.
+     */
+    public static double standardDeviation(double[] series) {
+        int count = 0;
+        double sum = 0.0, sumSquares = 0.0;
+        for (double value : series) {
+            if (!Double.isNaN(value)) {
+                count++;
+                sum += value;
+                sumSquares += value * value;
+            }
+        }
+        if (count < MIN_OBSERVATIONS) {
+            return 0.0;
+        }
+        return Math.sqrt(Math.max(0.0, (sumSquares - sum * sum / count) / (count - 1)));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Fills row {@code i} right of the diagonal and its mirror below; rows write
+     * disjoint cells, so tasks need no locking.
+     */
+    private static void correlateRow(double[][] returns, double[][] matrix, int i) {
+        matrix[i][i] = 1.0;
+        double[] x = returns[i];
+        for (int j = i + 1; j < returns.length; j++) {
+            double correlation = correlate(x, returns[j]);
+            matrix[i][j] = correlation;
+            matrix[j][i] = correlation;
+        }
+    }
+
+    /**
+     * Pearson correlation over the indexes where both series are known, in one pass.
+     */
+    static double correlate(double[] x, double[] y) {
+        int count = 0;
+        double sumX = 0.0, sumY = 0.0, sumXX = 0.0, sumYY = 0.0, sumXY = 0.0;
+        for (int t = 0; t < x.length; t++) {
+            double a = x[t];
+            double b = y[t];
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                continue;
+            }
+            count++;
+            sumX += a;
+            sumY += b;
+            sumXX += a * a;
+            sumYY += b * b;
+            sumXY += a * b;
+        }
+        if (count < MIN_OBSERVATIONS) {
+            return 0.0;
+        }
+        double covariance = sumXY - sumX * sumY / count;
+        double varianceX = sumXX - sumX * sumX / count;
+        double varianceY = sumYY - sumY * sumY / count;
+        if (varianceX <= 0.0 || varianceY <= 0.0) {
+            return 0.0;
+        }
+        return Math.max(-1.0, Math.min(1.0, covariance / Math.sqrt(varianceX * varianceY)));
+    }
+
+    private static double close(Map<Date, BigDecimal> series, Date date) {
+        if (series == null || date == null) {
+            return Double.NaN;
+        }
+        BigDecimal price = series.get(date);
+        return price != null && price.signum() > 0 ? price.doubleValue() : Double.NaN;
+    }
+}
@@ -0,0 +1,615 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.dao.MarketDataDAO;
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared correlation and covariance matrix over every symbol seen by recent
+ * risk runs, versioned by as-of date.
+ *
+ * Each symbol owns a slot holding its daily return series and one row and
+ * column of a global correlation matrix. A portfolio's matrix is assembled by
+ * index lookup into the global one; only symbols not yet in the store are
+ * loaded (one bulk MarketDataDAO call) and correlated against the cached
+ * series. Correlations over years of history barely move within a day, so
+ * the whole store is rebuilt only when a later as-of date is requested, i.e.
+ * after the market close load. The rebuild keeps the current working set and
+ * halves every use count, so symbols that stop being requested age out.
+ *
+ * A generation's date axis is the union of the dates its symbols were loaded
+ * with. A symbol added later is aligned on that axis; if its history has
+ * dates the axis lacks (say the generation started from a recent listing),
+ * the generation is rebuilt at the same as-of date on the wider axis rather
+ * than dropping those days from its correlations.
+ *
+ * Memory is bounded by {@code maxSymbols}: to make room, the least used
+ * symbols (oldest use breaking ties) are evicted and their slots reused. A
+ * request wider than the bound is computed without caching.
+ *
+ * Slot state is guarded by the store's monitor, but price loads and
+ * correlation runs happen outside it: a thread snapshots what it needs under
+ * the lock, loads and correlates without it, then re-takes the lock to install
+ * the result. If a rebuild or another thread's additions changed the store in
+ * the meantime, the result is discarded or completed and the install retried.
+ * Lookups of cached symbols therefore never wait behind a slow load. While one
+ * thread rebuilds for a new as-of date, other requests are served from the
+ * current generation.
+ *
+ * @author Legacy Systems Team
+ * @since 2004
+ */
+public class CorrelationMatrixStore {
+
+    private static final Logger logger = Logger.getLogger(CorrelationMatrixStore.class);
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final MarketDataDAO marketDataDAO;
+    private final CorrelationEngine engine;
+    private final int periodDays;
+    private volatile int maxSymbols;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    // Current generation
+    private Date asOf;
+    private long version;
+    private Date[] axis = new Date[0];
+
+    // Slot storage; a slot is free when its symbol is null
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int capacity;
+    private int highWater;
+    private String[] slotSymbols = new String[0];
+    private double[][] series = new double[0][];
+    private double[] stdDev = new double[0];
+    private double[][] matrix = new double[0][0];
+    private long[] uses = new long[0];
+    private long[] lastUsed = new long[0];
+    private long clock;
+
+    // As-of date of the rebuild in progress, if any
+    private Date rebuildingAsOf;
+
+    /**
+     * @param periodDays length of price history behind each correlation
+     * @param maxSymbols most symbols kept at once
+     */
+    public CorrelationMatrixStore(MarketDataDAO marketDataDAO, CorrelationEngine engine,
+                                  int periodDays, int maxSymbols) {
+        this.marketDataDAO = marketDataDAO;
+        this.engine = engine;
+        this.periodDays = periodDays;
+        this.maxSymbols = Math.max(1, maxSymbols);
+    }
+
+    /**
+     * Correlation matrix of the given distinct symbols, in the given order.
+     *
+     * @param asOf last market close the caller wants reflected; an earlier
+     *             date than the store's is served from the current generation
+     */
+    public double[][] correlationMatrix(List<String> symbols, Date asOf) {
+        if (symbols.isEmpty()) {
+            return new double[0][0];
+        }
+        if (symbols.size() > maxSymbols) {
+            return uncached(symbols, asOf, false);
+        }
+        boolean rebuilt = rebuild(asOf, symbols);
+        return lookup(symbols, rebuilt, null);
+    }
+
+    /**
+     * Covariance matrix of daily returns: correlation scaled by each pair's
+     * standard deviations over the same history.
+     */
+    public double[][] covarianceMatrix(List<String> symbols, Date asOf) {
+        if (symbols.size() > maxSymbols) {
+            return uncached(symbols, asOf, true);
+        }
+        boolean rebuilt = !symbols.isEmpty() && rebuild(asOf, symbols);
+        double[] sd = new double[symbols.size()];
+        double[][] result = lookup(symbols, rebuilt, sd);
+        scaleToCovariance(result, sd);
+        return result;
+    }
+
+    /**
+     * Rebuilds the cached symbols as of a new market close, e.g. right after
+     * the end-of-day price load. Ignored if the store is already that current
+     * or holds no symbols yet.
+     */
+    public void refresh(Date asOf) {
+        rebuild(asOf, Collections.<String>emptyList());
+    }
+
+    private boolean rebuild(Date asOf, List<String> requested) {
+        return rebuild(asOf, requested, -1L);
+    }
+
+    /**
+     * New generation for {@code asOf}: the requested symbols plus as many of
+     * the currently cached ones as fit, most used first. Does nothing if the
+     * store is already that current, if there is nothing to load, or if
+     * another thread is already rebuilding and a generation exists to serve
+     * from meanwhile.
+     *
+     * @param replacing version of a generation to rebuild at its own as-of
+     *                  date (to widen its axis), or -1 for a new as-of date;
+     *                  ignored if that generation has already been replaced
+     * @return true if this call installed the new generation
+     */
+    private boolean rebuild(Date asOf, List<String> requested, long replacing) {
+        List<String> symbols;
+        long expectedVersion;
+        boolean marked = false;
+        synchronized (this) {
+            if (replacing >= 0) {
+                if (version != replacing) {
+                    return false;
+                }
+            } else {
+                if (this.asOf != null && !asOf.after(this.asOf)) {
+                    return false;
+                }
+                if (this.asOf != null && rebuildingAsOf != null && !asOf.after(rebuildingAsOf)) {
+                    return false;
+                }
+            }
+
+            Set<String> keep = new LinkedHashSet<>(requested);
+            Integer[] cached = occupiedSlots();
+            Arrays.sort(cached, (a, b) -> uses[a] != uses[b]
+                    ? Long.compare(uses[b], uses[a])
+                    : Long.compare(lastUsed[b], lastUsed[a]));
+            for (Integer slot : cached) {
+                if (keep.size() >= maxSymbols) {
+                    break;
+                }
+                keep.add(slotSymbols[slot]);
+            }
+            if (keep.isEmpty()) {
+                return false;
+            }
+
+            symbols = new ArrayList<>(keep);
+            expectedVersion = version;
+            if (replacing < 0) {
+                rebuildingAsOf = asOf;
+                marked = true;
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            List<Map<Date, BigDecimal>> prices = loadPrices(symbols, asOf);
+            Date[] newAxis = CorrelationEngine.dateAxis(prices);
+            double[][] returns = CorrelationEngine.toReturnSeries(prices, newAxis);
+            double[][] correlations = engine.correlationMatrix(returns);
+
+            synchronized (this) {
+                if (version != expectedVersion) {
+                    // Another thread installed a generation first
+                    return false;
+                }
+                install(asOf, symbols, newAxis, returns, correlations);
+            }
+        } finally {
+            if (marked) {
+                synchronized (this) {
+                    if (asOf.equals(rebuildingAsOf)) {
+                        rebuildingAsOf = null;
+                    }
+                }
+            }
+        }
+
+        logger.info("Correlation store rebuilt as of " + asOf + " with " + symbols.size() + " symbols in "
+                + (System.currentTimeMillis() - startTime) + "ms (version " + (expectedVersion + 1) + ")");
+        return true;
+    }
+
+    /**
+     * Replaces the current generation; use counts are halved only for a new
+     * as-of date. Caller holds the lock.
+     */
+    private void install(Date asOf, List<String> symbols, Date[] newAxis, double[][] returns,
+                         double[][] correlations) {
+        int ageing = asOf.equals(this.asOf) ? 1 : 2;
+        Map<String, Long> agedUses = new HashMap<>();
+        for (Integer slot : occupiedSlots()) {
+            agedUses.put(slotSymbols[slot], uses[slot] / ageing);
+        }
+
+        slots.clear();
+        freeSlots.clear();
+        highWater = 0;
+        capacity = 0;
+        slotSymbols = new String[0];
+        series = new double[0][];
+        stdDev = new double[0];
+        matrix = new double[0][0];
+        uses = new long[0];
+        lastUsed = new long[0];
+        allocate(Math.max(INITIAL_CAPACITY, Math.min(symbols.size() * 2, maxSymbols)));
+        for (int s = 0; s < symbols.size(); s++) {
+            int slot = highWater++;
+            slotSymbols[slot] = symbols.get(s);
+            series[slot] = returns[s];
+            stdDev[slot] = CorrelationEngine.standardDeviation(returns[s]);
+            Long aged = agedUses.get(symbols.get(s));
+            uses[slot] = aged != null ? aged : 0L;
+            lastUsed[slot] = 0L;
+            slots.put(symbols.get(s), slot);
+            System.arraycopy(correlations[s], 0, matrix[slot], 0, symbols.size());
+        }
+
+        this.axis = newAxis;
+        this.asOf = asOf;
+        version++;
+        refreshes.incrementAndGet();
+    }
+
+    /**
+     * Assembles the matrix of the requested symbols, first loading and
+     * correlating those that are not cached yet (evicting rarely used symbols
+     * if the store is full).
+     *
+     * @param rebuilt the requested symbols were just loaded by a rebuild
+     * @param sd      if not null, receives each symbol's standard deviation
+     */
+    private double[][] lookup(List<String> requested, boolean rebuilt, double[] sd) {
+        boolean counted = false;
+        PendingSymbols pending = null;
+        while (true) {
+            synchronized (this) {
+                if (pending != null) {
+                    addPending(pending, requested);
+                }
+
+                List<String> missing = new ArrayList<>();
+                for (String symbol : requested) {
+                    if (!slots.containsKey(symbol)) {
+                        missing.add(symbol);
+                    }
+                }
+                if (!counted) {
+                    int loaded = rebuilt ? requested.size() : missing.size();
+                    hits.addAndGet(requested.size() - loaded);
+                    misses.addAndGet(loaded);
+                    counted = true;
+                }
+
+                if (missing.isEmpty()) {
+                    int[] index = touch(requested);
+                    double[][] result = new double[index.length][index.length];
+                    for (int i = 0; i < index.length; i++) {
+                        double[] row = matrix[index[i]];
+                        for (int j = 0; j < index.length; j++) {
+                            result[i][j] = row[index[j]];
+                        }
+                        if (sd != null) {
+                            sd[i] = stdDev[index[i]];
+                        }
+                    }
+                    return result;
+                }
+
+                pending = snapshot(missing, pending);
+            }
+            if (!correlate(pending)) {
+                // Widen the axis; the rebuilt generation holds the requested symbols
+                rebuild(pending.asOf, requested, pending.version);
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Captures, under the lock, what correlating {@code missing} against the
+     * cached symbols needs. Series already loaded by an earlier attempt on the
+     * same generation are carried over.
+     */
+    private PendingSymbols snapshot(List<String> missing, PendingSymbols previous) {
+        PendingSymbols pending = new PendingSymbols(missing, version, asOf, axis);
+        if (previous != null && previous.version == version) {
+            pending.loaded.putAll(previous.loaded);
+        }
+        for (Integer slot : occupiedSlots()) {
+            pending.existing.add(slotSymbols[slot]);
+            pending.existingReturns.add(series[slot]);
+        }
+        return pending;
+    }
+
+    /**
+     * Loads the pending symbols' prices and correlates them against the
+     * snapshot, without holding the lock.
+     *
+     * @return false, with nothing correlated, if the loaded prices have dates
+     *         that are not on the snapshot's axis
+     */
+    private boolean correlate(PendingSymbols pending) {
+        List<String> toLoad = new ArrayList<>();
+        for (String symbol : pending.missing) {
+            if (!pending.loaded.containsKey(symbol)) {
+                toLoad.add(symbol);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            List<Map<Date, BigDecimal>> prices = loadPrices(toLoad, pending.asOf);
+            for (Date date : CorrelationEngine.dateAxis(prices)) {
+                if (Arrays.binarySearch(pending.axis, date) < 0) {
+                    logger.debug("Prices for " + toLoad + " extend past the axis of version " + pending.version);
+                    return false;
+                }
+            }
+            double[][] loaded = CorrelationEngine.toReturnSeries(prices, pending.axis);
+            for (int m = 0; m < toLoad.size(); m++) {
+                pending.loaded.put(toLoad.get(m), loaded[m]);
+            }
+        }
+
+        double[][] newReturns = new double[pending.missing.size()][];
+        for (int m = 0; m < newReturns.length; m++) {
+            newReturns[m] = pending.loaded.get(pending.missing.get(m));
+        }
+        pending.newReturns = newReturns;
+        pending.cross = engine.crossCorrelation(newReturns, pending.existingReturns.toArray(new double[0][]));
+        pending.among = engine.correlationMatrix(newReturns);
+        return true;
+    }
+
+    /**
+     * Installs correlated symbols if the store still matches their snapshot:
+     * same generation, and no symbol added since that they were not correlated
+     * against. Otherwise leaves them for the caller to snapshot again. Caller
+     * holds the lock.
+     */
+    private void addPending(PendingSymbols pending, List<String> requested) {
+        if (pending.version != version) {
+            return;
+        }
+        Set<String> known = new HashSet<>(pending.existing);
+        known.addAll(pending.missing);
+        for (String symbol : slots.keySet()) {
+            if (!known.contains(symbol)) {
+                return;
+            }
+        }
+
+        int adding = 0;
+        for (String symbol : pending.missing) {
+            if (!slots.containsKey(symbol)) {
+                adding++;
+            }
+        }
+        Set<String> keep = new LinkedHashSet<>(requested);
+        keep.addAll(pending.missing);
+        evict(slots.size() + adding - maxSymbols, keep);
+
+        int[] newSlots = new int[pending.missing.size()];
+        for (int m = 0; m < newSlots.length; m++) {
+            String symbol = pending.missing.get(m);
+            Integer slot = slots.get(symbol);
+            if (slot == null) {
+                slot = nextSlot();
+                uses[slot] = 0L;
+                lastUsed[slot] = 0L;
+                slots.put(symbol, slot);
+            }
+            newSlots[m] = slot;
+            slotSymbols[slot] = symbol;
+            series[slot] = pending.newReturns[m];
+            stdDev[slot] = CorrelationEngine.standardDeviation(pending.newReturns[m]);
+        }
+        for (int m = 0; m < newSlots.length; m++) {
+            int slot = newSlots[m];
+            for (int e = 0; e < pending.existing.size(); e++) {
+                Integer other = slots.get(pending.existing.get(e));
+                if (other != null) {
+                    matrix[slot][other] = pending.cross[m][e];
+                    matrix[other][slot] = pending.cross[m][e];
+                }
+            }
+            for (int k = 0; k < newSlots.length; k++) {
+                matrix[slot][newSlots[k]] = pending.among[m][k];
+            }
+        }
+    }
+
+    private void evict(int count, Set<String> protectedSymbols) {
+        if (count <= 0) {
+            return;
+        }
+        List<Integer> candidates = new ArrayList<>();
+        for (Integer slot : occupiedSlots()) {
+            if (!protectedSymbols.contains(slotSymbols[slot])) {
+                candidates.add(slot);
+            }
+        }
+        candidates.sort((a, b) -> uses[a] != uses[b]
+                ? Long.compare(uses[a], uses[b])
+                : Long.compare(lastUsed[a], lastUsed[b]));
+
+        for (int i = 0; i < count && i < candidates.size(); i++) {
+            int slot = candidates.get(i);
+            slots.remove(slotSymbols[slot]);
+            slotSymbols[slot] = null;
+            series[slot] = null;
+            freeSlots.push(slot);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private int[] touch(List<String> symbols) {
+        clock++;
+        int[] index = new int[symbols.size()];
+        for (int i = 0; i < index.length; i++) {
+            int slot = slots.get(symbols.get(i));
+            uses[slot]++;
+            lastUsed[slot] = clock;
+            index[i] = slot;
+        }
+        return index;
+    }
+
+    private int nextSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (highWater == capacity) {
+            allocate(Math.min(Math.max(capacity * 2, INITIAL_CAPACITY), Math.max(maxSymbols, capacity + 1)));
+        }
+        return highWater++;
+    }
+
+    private void allocate(int newCapacity) {
+        slotSymbols = Arrays.copyOf(slotSymbols, newCapacity);
+        series = Arrays.copyOf(series, newCapacity);
+        stdDev = Arrays.copyOf(stdDev, newCapacity);
+        uses = Arrays.copyOf(uses, newCapacity);
+        lastUsed = Arrays.copyOf(lastUsed, newCapacity);
+
+        double[][] grown = new double[newCapacity][];
+        for (int i = 0; i < newCapacity; i++) {
+            grown[i] = i < highWater ? Arrays.copyOf(matrix[i], newCapacity) : new double[newCapacity];
+        }
+        matrix = grown;
+        capacity = newCapacity;
+    }
+
+    private Integer[] occupiedSlots() {
+        List<Integer> occupied = new ArrayList<>(slots.size());
+        for (int slot = 0; slot < highWater; slot++) {
+            if (slotSymbols[slot] != null) {
+                occupied.add(slot);
+            }
+        }
+        return occupied.toArray(new Integer[0]);
+    }
+
+    /**
+     * Computes a matrix too wide to cache straight from a fresh load.
+     */
+    private double[][] uncached(List<String> symbols, Date asOf, boolean covariance) {
+        logger.debug("Correlating " + symbols.size() + " symbols without caching (limit " + maxSymbols + ")");
+        double[][] returns = CorrelationEngine.toReturnSeries(loadPrices(symbols, asOf));
+        double[][] result = engine.correlationMatrix(returns);
+        if (covariance) {
+            double[] sd = new double[returns.length];
+            for (int i = 0; i < sd.length; i++) {
+                sd[i] = CorrelationEngine.standardDeviation(returns[i]);
+            }
+            scaleToCovariance(result, sd);
+        }
+        return result;
+    }
+
+    private static void scaleToCovariance(double[][] correlations, double[] sd) {
+        for (int i = 0; i < correlations.length; i++) {
+            for (int j = 0; j < correlations.length; j++) {
+                correlations[i][j] *= sd[i] * sd[j];
+            }
+        }
+    }
+
+    /**
+     * Closing prices over the period ending at the as-of date, in symbol order;
+     * null for symbols without data.
+     */
+    private List<Map<Date, BigDecimal>> loadPrices(List<String> symbols, Date asOf) {
+        Date endDate = new Date(asOf.getTime() + DAY_MILLIS - 1);
+        Date startDate = new Date(asOf.getTime() - periodDays * DAY_MILLIS);
+        Map<String, Map<Date, BigDecimal>> history = marketDataDAO.getHistoricalPrices(symbols, startDate, endDate);
+
+        List<Map<Date, BigDecimal>> prices = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            prices.add(history.get(symbol));
+        }
+        return prices;
+    }
+
+    public synchronized Date getAsOf() {
+        return asOf;
+    }
+
+    /** Incremented on every rebuild. */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /** Approximate heap used by the global matrix and the cached return series. */
+    public synchronized long getFootprintBytes() {
+        return (long) capacity * capacity * 8L + (long) slots.size() * axis.length * 8L;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public void setMaxSymbols(int maxSymbols) {
+        this.maxSymbols = Math.max(1, maxSymbols);
+    }
+
+    /**
+     * Symbols being added outside the lock, with the snapshot they are
+     * correlated against.
+     */
+    private static final class PendingSymbols {
+        private final List<String> missing;
+        private final long version;
+        private final Date asOf;
+        private final Date[] axis;
+        private final List<String> existing = new ArrayList<>();
+        private final List<double[]> existingReturns = new ArrayList<>();
+        private final Map<String, double[]> loaded = new HashMap<>();
+        private double[][] newReturns;
+        private double[][] cross;
+        private double[][] among;
+
+        private PendingSymbols(List<String> missing, long version, Date asOf, Date[] axis) {
+            this.missing = missing;
+            this.version = version;
+            this.asOf = asOf;
+            this.axis = axis;
+        }
+    }
+}
@@ -2,11 +2,13 @@ package com.vanguard.portal.service;
 
 import com.vanguard.portal.dao.HoldingsDAO;
 import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.util.FixedPoint;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -48,24 +50,39 @@ public class HoldingsServiceImpl implements HoldingsService {
         // Fetch current prices via SOAP
         Map<String, BigDecimal> currentPrices = marketDataService.getStockQuotes(symbols);
 
-        // Update each holding with current price
+        // Update each holding with current price; symbols without a usable price keep their stored values
+        List<Holding> repriced = new ArrayList<>(holdings.size());
+        int skipped = 0;
         for (Holding holding : holdings) {
             BigDecimal currentPrice = currentPrices.get(holding.getSymbol());
-            if (currentPrice != null) {
-                holding.setCurrentPrice(currentPrice);
-                holding.setMarketValue(holding.getQuantity().multiply(currentPrice));
+            if (currentPrice == null || currentPrice.signum() <= 0) {
+                skipped++;
+            } else {
+                // Market value and gain/loss in scaled longs, rounded to the column scales.
+                // The quote is taken at its own scale so extra provider decimals are not rounded away.
+                int priceScale = FixedPoint.exactScale(currentPrice, FixedPoint.PRICE_SCALE);
+                long price = FixedPoint.toScaled(currentPrice, priceScale);
+                long quantity = FixedPoint.toScaled(holding.getQuantity(), FixedPoint.QUANTITY_SCALE);
+                long costBasis = FixedPoint.toScaled(holding.getPurchasePrice(), priceScale);
+
+                long marketValue = FixedPoint.multiply(quantity, FixedPoint.QUANTITY_SCALE,
+                        price, priceScale, FixedPoint.MONEY_SCALE);
 
-                // Calculate gain/loss percentage
-                BigDecimal costBasis = holding.getPurchasePrice();
-                BigDecimal gainLoss = currentPrice.subtract(costBasis);
-                BigDecimal gainLossPct = gainLoss.divide(costBasis, 4, BigDecimal.ROUND_HALF_UP)
-                        .multiply(new BigDecimal("100"));
-                holding.setGainLossPct(gainLossPct);
+                holding.setCurrentPrice(currentPrice);
+                holding.setMarketValue(FixedPoint.toBigDecimal(marketValue, FixedPoint.MONEY_SCALE));
+                holding.setGainLossPct(FixedPoint.toBigDecimal(
+                        FixedPoint.percentChange(price, costBasis), FixedPoint.PERCENT_SCALE));
 
-                holdingsDAO.save(holding);
+                repriced.add(holding);
             }
         }
 
-        logger.info("Updated prices for " + holdings.size() + " holdings");
+        // One connection and batched UPDATEs instead of a save() round trip per holding
+        int updated = holdingsDAO.updatePrices(repriced);
+
+        logger.info("Updated prices for " + updated + " holdings");
+        if (skipped > 0) {
+            logger.warn("Skipped " + skipped + " holdings with no available price for customer: " + customerId);
+        }
     }
 }
@@ -0,0 +1,32 @@
+package com.vanguard.portal.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Uncorrelated normal daily returns, one volatility per position.
+ *
+ * Volatilities are annualized and converted to daily once at construction;
+ * generating a scenario touches only the RNG and a primitive array.
+ *
+ * @author Legacy Systems Team
+ * @since 2004
+ */
+public class IndependentNormalScenarios implements ScenarioGenerator {
+
+    private final double[] dailyVolatility;
+
+    public IndependentNormalScenarios(double[] annualVolatility) {
+        this.dailyVolatility = new double[annualVolatility.length];
+        double scale = 1.0 / Math.sqrt(252.0);
+        for (int i = 0; i < annualVolatility.length; i++) {
+            dailyVolatility[i] = annualVolatility[i] * scale;
+        }
+    }
+
+    @Override
+    public void nextScenario(SplittableRandom rng, double[] returns) {
+        for (int i = 0; i < dailyVolatility.length; i++) {
+            returns[i] = MonteCarloVarEngine.nextGaussian(rng) * dailyVolatility[i];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.vanguard.portal.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last price successfully received from the provider for each symbol.
+ *
+ * Unlike {@link QuoteCache} entries never expire: when the provider is failing
+ * these prices are served as stale quotes, each carrying the time it was
+ * fetched, instead of zero. The store holds one entry per symbol ever quoted,
+ * which is bounded by the instrument universe.
+ *
+ * @author Legacy Team
+ * @since 2012
+ */
+public class LastKnownGoodPrices {
+
+    private final ConcurrentHashMap<String, PricePoint> prices = new ConcurrentHashMap<>();
+
+    public void recordAll(Map<String, BigDecimal> quotes) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, BigDecimal> entry : quotes.entrySet()) {
+            prices.put(entry.getKey(), new PricePoint(entry.getValue(), now));
+        }
+    }
+
+    public PricePoint get(String symbol) {
+        return prices.get(symbol);
+    }
+
+    /**
+     * Returns the known prices for the given symbols; symbols never quoted are absent.
+     */
+    public Map<String, PricePoint> getAll(Collection<String> symbols) {
+        Map<String, PricePoint> found = new HashMap<>();
+        for (String symbol : symbols) {
+            PricePoint point = prices.get(symbol);
+            if (point != null) {
+                found.put(symbol, point);
+            }
+        }
+        return found;
+    }
+
+    public int size() {
+        return prices.size();
+    }
+
+    /**
+     * A price and the time it was received from the provider.
+     */
+    public static final class PricePoint {
+        private final BigDecimal price;
+        private final long asOf;
+
+        PricePoint(BigDecimal price, long asOf) {
+            this.price = price;
+            this.asOf = asOf;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        /** Epoch millis when the provider returned this price. */
+        public long getAsOf() {
+            return asOf;
+        }
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - asOf;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.vanguard.portal.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
 
 /**
@@ -13,4 +15,8 @@ public interface MarketDataService {
     BigDecimal getStockQuote(String symbol);
 
     Map<String, BigDecimal> getMarketIndices();
+
+    Map<String, Date> getQuoteTimestamps(String[] symbols);
+
+    int refreshQuotes(Collection<String> symbols);
 }
@@ -1,14 +1,25 @@
 package com.vanguard.portal.service;
 
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import javax.xml.namespace.QName;
-import javax.xml.soap.*;
 import java.math.BigDecimal;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for retrieving real-time market data and stock quotes.
@@ -24,9 +35,225 @@ public class MarketDataServiceImpl implements MarketDataService {
 
     private static final Logger logger = Logger.getLogger(MarketDataServiceImpl.class);
 
-    // Legacy SOAP endpoint from 2012 - still in production!
-    private static final String SOAP_ENDPOINT = "http://marketdata.legacyprovider.com/soap/v1/quotes";
-    private static final String SOAP_NAMESPACE = "http://schemas.legacyprovider.com/marketdata/2012";
+    @Autowired
+    private QuoteBatcher quoteBatcher;
+
+    // Per-symbol quote cache: 15 second TTL, 10,000 symbols by default
+    private final QuoteCache quoteCache = new QuoteCache(15000L, 10000);
+
+    // Symbols currently being fetched from the provider, shared with concurrent callers
+    private final ConcurrentHashMap<String, CompletableFuture<BigDecimal>> inFlightQuotes = new ConcurrentHashMap<>();
+
+    // Last prices received from the provider, served stale while it is failing
+    private final LastKnownGoodPrices lastKnownGood = new LastKnownGoodPrices();
+
+    // Symbols whose refresh failed; retried by refreshStaleQuotes() once the backoff expires
+    private final Set<String> staleSymbols = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long providerRetryAt;
+    private long retryBaseMillis = 1000L;
+    private long retryMaxMillis = 60000L;
+
+    private final AtomicLong providerCalls = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong staleQuotesServed = new AtomicLong();
+
+    /**
+     * Returns current prices for the given symbols.
+     *
+     * Fresh prices are served from the per-symbol {@link QuoteCache}. Missing or
+     * expired symbols are fetched single-flight: if another request thread is
+     * already fetching a symbol, this thread waits for that result instead of
+     * asking the provider again, and only the symbols nobody is fetching yet go
+     * out in this thread's GetQuotes call. Outbound calls therefore track the
+     * number of distinct symbols rather than the number of concurrent users.
+     *
+     * If the provider fails, the last known good price is returned instead (see
+     * {@link #getQuoteTimestamps} for its age) and the symbol is queued for a
+     * background retry. While the provider is backing off, request threads do
+     * not call it at all and are served stale prices immediately. Symbols with
+     * no price at all are left out of the result rather than returned as zero.
+     */
+    @Override
+    public Map<String, BigDecimal> getStockQuotes(String[] symbols) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            requested.add(symbol);
+        }
+
+        Map<String, BigDecimal> quotes = quoteCache.getAll(requested);
+
+        // Claim the symbols nobody is fetching; join the in-flight fetch for the rest
+        Map<String, CompletableFuture<BigDecimal>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<BigDecimal>> pending = new LinkedHashMap<>();
+        for (String symbol : requested) {
+            if (quotes.containsKey(symbol)) {
+                continue;
+            }
+            CompletableFuture<BigDecimal> future = new CompletableFuture<>();
+            CompletableFuture<BigDecimal> inFlight = inFlightQuotes.putIfAbsent(symbol, future);
+            if (inFlight == null) {
+                owned.put(symbol, future);
+                pending.put(symbol, future);
+            } else {
+                coalescedRequests.incrementAndGet();
+                pending.put(symbol, inFlight);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            logger.debug("All " + requested.size() + " quotes served from cache");
+            return quotes;
+        }
+
+        // Provider is failing: don't make this request wait on it, serve what we have
+        if (isProviderBackingOff()) {
+            for (Map.Entry<String, CompletableFuture<BigDecimal>> entry : owned.entrySet()) {
+                inFlightQuotes.remove(entry.getKey(), entry.getValue());
+                entry.getValue().complete(null);
+            }
+            for (String symbol : pending.keySet()) {
+                serveStale(symbol, quotes, true);
+            }
+            return quotes;
+        }
+
+        if (!owned.isEmpty()) {
+            fetchAndPublish(owned);
+        }
+
+        for (Map.Entry<String, CompletableFuture<BigDecimal>> entry : pending.entrySet()) {
+            BigDecimal price = null;
+            boolean failed = false;
+            try {
+                price = entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            } catch (ExecutionException e) {
+                // Already logged by the fetching thread
+                failed = true;
+            }
+
+            if (price != null) {
+                quotes.put(entry.getKey(), price);
+            } else {
+                serveStale(entry.getKey(), quotes, failed);
+            }
+        }
+
+        return quotes;
+    }
+
+    /**
+     * Puts the last known good price for the symbol, if any, into the result.
+     * When the provider failed the symbol is also queued for background retry.
+     */
+    private void serveStale(String symbol, Map<String, BigDecimal> quotes, boolean retry) {
+        LastKnownGoodPrices.PricePoint point = lastKnownGood.get(symbol);
+        if (point != null) {
+            quotes.put(symbol, point.getPrice());
+            staleQuotesServed.incrementAndGet();
+        }
+        if (retry) {
+            staleSymbols.add(symbol);
+        }
+    }
+
+    /**
+     * Background retry for symbols that could only be served stale. Runs on the
+     * scheduler thread and only calls the provider once the backoff has expired,
+     * so an outage costs one probe per backoff interval instead of one failed
+     * call per user request.
+     */
+    @Scheduled(fixedDelayString = "${marketdata.staleRefresh.intervalMillis:1000}")
+    public void refreshStaleQuotes() {
+        if (staleSymbols.isEmpty() || isProviderBackingOff()) {
+            return;
+        }
+
+        logger.info("Retrying " + staleSymbols.size() + " stale quotes");
+        refreshQuotes(new ArrayList<>(staleSymbols));
+    }
+
+    private boolean isProviderBackingOff() {
+        return System.currentTimeMillis() < providerRetryAt;
+    }
+
+    private void recordProviderSuccess() {
+        if (consecutiveFailures.getAndSet(0) > 0) {
+            logger.info("Market data provider recovered");
+        }
+        providerRetryAt = 0L;
+    }
+
+    private void recordProviderFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        long backoff = Math.min(retryMaxMillis, retryBaseMillis << Math.min(failures - 1, 16));
+        providerRetryAt = System.currentTimeMillis() + backoff;
+        logger.warn("Market data provider failed " + failures + " time(s) in a row; serving last known prices, "
+                + "next retry in " + backoff + "ms");
+    }
+
+    /**
+     * Fetches the owned symbols in one provider call, caches the results and
+     * completes every waiter. Symbols the provider did not return complete with
+     * null. The in-flight entries are always released, even on failure.
+     *
+     * @return the prices received; empty if the call failed
+     */
+    private Map<String, BigDecimal> fetchAndPublish(Map<String, CompletableFuture<BigDecimal>> owned) {
+        Map<String, BigDecimal> fetched = new HashMap<>();
+        Exception failure = null;
+
+        try {
+            providerCalls.incrementAndGet();
+            fetched = fetchQuotesFromProvider(owned.keySet().toArray(new String[0]));
+            quoteCache.putAll(fetched);
+            lastKnownGood.recordAll(fetched);
+            staleSymbols.removeAll(owned.keySet());
+            recordProviderSuccess();
+        } catch (Exception e) {
+            logger.error("Error calling SOAP market data service", e);
+            failure = e;
+            recordProviderFailure();
+        } finally {
+            for (Map.Entry<String, CompletableFuture<BigDecimal>> entry : owned.entrySet()) {
+                inFlightQuotes.remove(entry.getKey(), entry.getValue());
+                if (failure != null) {
+                    entry.getValue().completeExceptionally(failure);
+                } else {
+                    entry.getValue().complete(fetched.get(entry.getKey()));
+                }
+            }
+        }
+        return failure != null ? new HashMap<String, BigDecimal>() : fetched;
+    }
+
+    /**
+     * Fetches the given symbols from the provider regardless of cache state and
+     * publishes the results to the cache, for background pre-warming. Symbols
+     * another thread is already fetching are skipped, and nothing is fetched
+     * while the provider is backing off.
+     *
+     * @return number of prices received
+     */
+    @Override
+    public int refreshQuotes(Collection<String> symbols) {
+        if (isProviderBackingOff()) {
+            return 0;
+        }
+
+        Map<String, CompletableFuture<BigDecimal>> owned = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            CompletableFuture<BigDecimal> future = new CompletableFuture<>();
+            if (inFlightQuotes.putIfAbsent(symbol, future) == null) {
+                owned.put(symbol, future);
+            }
+        }
+
+        return owned.isEmpty() ? 0 : fetchAndPublish(owned).size();
+    }
 
     /**
      * LEGACY TECHNOLOGY: SOAP Web Service Client
@@ -58,101 +285,24 @@ public class MarketDataServiceImpl implements MarketDataService {
      * The market data provider has offered a REST API since 2018, but migration
      * was deprioritized due to "if it ain't broke, don't fix it" mentality.
      * Monthly SOAP API costs are 3x higher than REST equivalent.
+     *
+     * The envelope building, HTTP transport and parsing live in the pooled
+     * {@link SoapQuoteClient}; the call goes through {@link QuoteBatcher} so
+     * concurrent fetches share one multi-symbol request. SOAP faults, transport
+     * errors and timeouts are all thrown, so each counts as a provider failure.
      */
-    @Override
-    public Map<String, BigDecimal> getStockQuotes(String[] symbols) {
+    private Map<String, BigDecimal> fetchQuotesFromProvider(String[] symbols) throws Exception {
         logger.info("Fetching quotes for " + symbols.length + " symbols via SOAP");
 
-        Map<String, BigDecimal> quotes = new HashMap<>();
         long startTime = System.currentTimeMillis();
+        Map<String, BigDecimal> quotes = quoteBatcher.getQuotes(symbols);
 
-        try {
-            // Create SOAP connection
-            SOAPConnectionFactory soapConnectionFactory = SOAPConnectionFactory.newInstance();
-            SOAPConnection soapConnection = soapConnectionFactory.createConnection();
-
-            // Build SOAP message
-            MessageFactory messageFactory = MessageFactory.newInstance();
-            SOAPMessage soapMessage = messageFactory.createMessage();
-            SOAPPart soapPart = soapMessage.getSOAPPart();
-
-            // SOAP Envelope
-            SOAPEnvelope envelope = soapPart.getEnvelope();
-            envelope.addNamespaceDeclaration("md", SOAP_NAMESPACE);
-
-            // SOAP Body with quote request
-            SOAPBody soapBody = envelope.getBody();
-            SOAPElement getQuotes = soapBody.addChildElement("GetQuotes", "md");
-
-            for (String symbol : symbols) {
-                SOAPElement symbolElement = getQuotes.addChildElement("Symbol", "md");
-                symbolElement.addTextNode(symbol);
-            }
-
-            // Add authentication header (legacy credentials in plain text!)
-            SOAPHeader soapHeader = envelope.getHeader();
-            SOAPElement authHeader = soapHeader.addChildElement("Authentication", "md");
-            SOAPElement username = authHeader.addChildElement("Username", "md");
-            username.addTextNode("vanguard_prod"); // Hardcoded credentials - another issue!
-            SOAPElement password = authHeader.addChildElement("Password", "md");
-            password.addTextNode("legacy2012"); // Security risk!
-
-            soapMessage.saveChanges();
-
-            // Log the SOAP request (verbose XML)
-            if (logger.isDebugEnabled()) {
-                logger.debug("SOAP Request: " + soapMessage.toString());
-            }
-
-            // Make SOAP call to endpoint
-            URL endpoint = new URL(SOAP_ENDPOINT);
-            SOAPMessage soapResponse = soapConnection.call(soapMessage, endpoint);
-
-            // Parse SOAP response
-            SOAPBody responseBody = soapResponse.getSOAPBody();
-
-            // Check for SOAP faults
-            if (responseBody.hasFault()) {
-                SOAPFault fault = responseBody.getFault();
-                logger.error("SOAP Fault: " + fault.getFaultString());
-                return quotes; // Return empty map on error
-            }
-
-            // Extract quote data from XML response
-            // This is incredibly verbose compared to parsing JSON
-            org.w3c.dom.NodeList quoteNodes = responseBody.getElementsByTagNameNS(SOAP_NAMESPACE, "Quote");
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        logger.info("Retrieved " + quotes.size() + " quotes via SOAP in " + elapsedTime + "ms");
 
-            for (int i = 0; i < quoteNodes.getLength(); i++) {
-                org.w3c.dom.Node quoteNode = quoteNodes.item(i);
-                if (quoteNode.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
-                    org.w3c.dom.Element quoteElement = (org.w3c.dom.Element) quoteNode;
-
-                    String symbol = quoteElement.getElementsByTagNameNS(SOAP_NAMESPACE, "Symbol")
-                            .item(0).getTextContent();
-                    String priceStr = quoteElement.getElementsByTagNameNS(SOAP_NAMESPACE, "LastPrice")
-                            .item(0).getTextContent();
-
-                    BigDecimal price = new BigDecimal(priceStr);
-                    quotes.put(symbol, price);
-                }
-            }
-
-            soapConnection.close();
-
-            long elapsedTime = System.currentTimeMillis() - startTime;
-            logger.info("Retrieved " + quotes.size() + " quotes via SOAP in " + elapsedTime + "ms");
-
-            // Log performance issues
-            if (elapsedTime > 1000) {
-                logger.warn("SLOW SOAP CALL: Quote retrieval took " + elapsedTime + "ms for " + symbols.length + " symbols");
-            }
-
-        } catch (Exception e) {
-            logger.error("Error calling SOAP market data service", e);
-            // Fallback to cached prices or default values
-            for (String symbol : symbols) {
-                quotes.put(symbol, BigDecimal.ZERO); // Return zero on error
-            }
+        // Log performance issues
+        if (elapsedTime > 1000) {
+            logger.warn("SLOW SOAP CALL: Quote retrieval took " + elapsedTime + "ms for " + symbols.length + " symbols");
         }
 
         return quotes;
@@ -161,6 +311,8 @@ public class MarketDataServiceImpl implements MarketDataService {
     /**
      * Gets a single stock quote using the SOAP service.
      * Convenience method that wraps the batch quote method.
+     *
+     * @return the price, possibly stale, or null if the symbol has never been quoted
      */
     @Override
     public BigDecimal getStockQuote(String symbol) {
@@ -169,7 +321,7 @@ public class MarketDataServiceImpl implements MarketDataService {
         String[] symbols = {symbol};
         Map<String, BigDecimal> quotes = getStockQuotes(symbols);
 
-        return quotes.getOrDefault(symbol, BigDecimal.ZERO);
+        return quotes.get(symbol);
     }
 
     /**
@@ -183,4 +335,79 @@ public class MarketDataServiceImpl implements MarketDataService {
         String[] indices = {"^DJI", "^GSPC", "^IXIC"};
         return getStockQuotes(indices);
     }
+
+    /**
+     * Returns when each symbol's price was last received from the provider.
+     * A quote older than the cache TTL is being served stale.
+     */
+    @Override
+    public Map<String, Date> getQuoteTimestamps(String[] symbols) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            requested.add(symbol);
+        }
+
+        Map<String, Date> timestamps = new HashMap<>();
+        for (Map.Entry<String, LastKnownGoodPrices.PricePoint> entry : lastKnownGood.getAll(requested).entrySet()) {
+            timestamps.put(entry.getKey(), new Date(entry.getValue().getAsOf()));
+        }
+        return timestamps;
+    }
+
+    public QuoteCache getQuoteCache() {
+        return quoteCache;
+    }
+
+    public LastKnownGoodPrices getLastKnownGoodPrices() {
+        return lastKnownGood;
+    }
+
+    /** Number of symbol lookups answered with a last known good price. */
+    public long getStaleQuoteCount() {
+        return staleQuotesServed.get();
+    }
+
+    /** Number of symbols waiting for a background retry. */
+    public int getStaleSymbolCount() {
+        return staleSymbols.size();
+    }
+
+    public int getConsecutiveProviderFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /** Number of outbound GetQuotes calls made to the provider. */
+    public long getProviderCallCount() {
+        return providerCalls.get();
+    }
+
+    /** Number of symbol lookups that joined another thread's in-flight fetch. */
+    public long getCoalescedRequestCount() {
+        return coalescedRequests.get();
+    }
+
+    /** Number of symbols currently being fetched from the provider. */
+    public int getInFlightQuoteCount() {
+        return inFlightQuotes.size();
+    }
+
+    @Value("${marketdata.quoteCache.ttlMillis:15000}")
+    public void setQuoteCacheTtlMillis(long ttlMillis) {
+        quoteCache.setTtlMillis(ttlMillis);
+    }
+
+    @Value("${marketdata.quoteCache.maxSize:10000}")
+    public void setQuoteCacheMaxSize(int maxSize) {
+        quoteCache.setMaxSize(maxSize);
+    }
+
+    @Value("${marketdata.retry.baseMillis:1000}")
+    public void setRetryBaseMillis(long retryBaseMillis) {
+        this.retryBaseMillis = retryBaseMillis;
+    }
+
+    @Value("${marketdata.retry.maxMillis:60000}")
+    public void setRetryMaxMillis(long retryMaxMillis) {
+        this.retryMaxMillis = retryMaxMillis;
+    }
 }
@@ -0,0 +1,258 @@
+package com.vanguard.portal.service;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-batching stage in front of the GetQuotes provider call.
+ *
+ * {@link MarketDataServiceImpl} sends the symbols it has to fetch (cache misses
+ * nobody else is already fetching) through here. Request threads enqueue their
+ * symbols and block; a dispatcher thread collects requests for up to
+ * {@code maxWaitMillis} or until {@code maxBatchSymbols} distinct symbols are
+ * pending, then sends them as one multi-symbol GetQuotes call and hands each
+ * caller its own subset. Under load many per-request calls collapse into a few
+ * large ones; when idle a lone request waits at most {@code maxWaitMillis}.
+ *
+ * Batches are sent on a small pool, at most {@code maxInFlight} at a time, so a
+ * slow provider call does not hold up the next window. When every slot is busy
+ * the dispatcher waits for one, and the requests arriving meanwhile go out
+ * together in the next batch. Provider errors, including SOAP faults, fail every
+ * caller in the batch with the provider's exception.
+ *
+ * @author Legacy Team
+ * @since 2012
+ */
+@Component("quoteBatcher")
+public class QuoteBatcher implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = Logger.getLogger(QuoteBatcher.class);
+
+    // Upper bound a caller waits for its batch before giving up
+    private static final long CALLER_TIMEOUT_MILLIS = 30000L;
+
+    @Autowired
+    private SoapQuoteClient soapQuoteClient;
+
+    private long maxWaitMillis = 10L;
+    private int maxBatchSymbols = 200;
+    private int maxInFlight = 4;
+
+    private final LinkedBlockingQueue<PendingRequest> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong requestsBatched = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread dispatcher;
+    private ExecutorService senders;
+    private Semaphore inFlight;
+
+    @Override
+    public void afterPropertiesSet() {
+        inFlight = new Semaphore(maxInFlight);
+        final AtomicInteger senderIds = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "quote-batch-" + senderIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "quote-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        logger.info("Quote batcher started (window " + maxWaitMillis + "ms, max " + maxBatchSymbols
+                + " symbols, " + maxInFlight + " batches in flight)");
+    }
+
+    /**
+     * Stops dispatching and fails every caller still waiting, instead of leaving
+     * them blocked until their timeout.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+        failPending();
+    }
+
+    /**
+     * Returns prices for the given symbols through the next batch. Symbols the
+     * provider did not quote are absent from the result.
+     *
+     * @throws Exception whatever the provider call for the batch failed with
+     */
+    public Map<String, BigDecimal> getQuotes(String... symbols) throws Exception {
+        PendingRequest request = new PendingRequest(symbols);
+        queue.offer(request);
+        if (!running) {
+            // Shut down between the offer and now; make sure nobody is left waiting
+            failPending();
+        }
+
+        try {
+            return request.result.get(CALLER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for quotes", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Quote batch did not complete within " + CALLER_TIMEOUT_MILLIS + "ms", e);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<PendingRequest> batch = new ArrayList<>();
+            Set<String> symbols = new LinkedHashSet<>();
+            try {
+                // Block for the first request, then keep collecting until the window closes or the batch is full
+                PendingRequest first = queue.take();
+                batch.add(first);
+                symbols.addAll(first.symbols);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (symbols.size() < maxBatchSymbols) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    symbols.addAll(next.symbols);
+                }
+
+                inFlight.acquire();
+                try {
+                    senders.execute(() -> {
+                        try {
+                            sendBatch(batch, symbols);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    fail(batch, new IllegalStateException("Quote batcher is shut down"));
+                }
+
+            } catch (InterruptedException e) {
+                // Shutting down; the batch collected so far has not been sent
+                fail(batch, new IllegalStateException("Quote batcher is shut down"));
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void sendBatch(List<PendingRequest> batch, Set<String> symbols) {
+        try {
+            Map<String, BigDecimal> quotes = soapQuoteClient.getQuotes(symbols.toArray(new String[0]));
+            batchesSent.incrementAndGet();
+            requestsBatched.addAndGet(batch.size());
+
+            for (PendingRequest request : batch) {
+                Map<String, BigDecimal> subset = new HashMap<>();
+                for (String symbol : request.symbols) {
+                    BigDecimal price = quotes.get(symbol);
+                    if (price != null) {
+                        subset.put(symbol, price);
+                    }
+                }
+                request.result.complete(subset);
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sent quote batch: " + batch.size() + " requests, " + symbols.size() + " symbols");
+            }
+
+        } catch (Exception e) {
+            logger.error("Quote batch failed for " + symbols.size() + " symbols", e);
+            fail(batch, e);
+        }
+    }
+
+    private void failPending() {
+        List<PendingRequest> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        if (!abandoned.isEmpty()) {
+            logger.warn("Quote batcher stopped with " + abandoned.size() + " requests pending");
+            fail(abandoned, new IllegalStateException("Quote batcher is shut down"));
+        }
+    }
+
+    private static void fail(List<PendingRequest> batch, Exception e) {
+        for (PendingRequest request : batch) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    /** Number of multi-symbol calls sent. */
+    public long getBatchCount() {
+        return batchesSent.get();
+    }
+
+    /** Number of caller requests served by those calls. */
+    public long getBatchedRequestCount() {
+        return requestsBatched.get();
+    }
+
+    @Value("${marketdata.batch.maxWaitMillis:10}")
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Value("${marketdata.batch.maxSymbols:200}")
+    public void setMaxBatchSymbols(int maxBatchSymbols) {
+        this.maxBatchSymbols = Math.max(1, maxBatchSymbols);
+    }
+
+    @Value("${marketdata.batch.maxInFlight:4}")
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    private static final class PendingRequest {
+        private final Set<String> symbols = new LinkedHashSet<>();
+        private final CompletableFuture<Map<String, BigDecimal>> result = new CompletableFuture<>();
+
+        private PendingRequest(String[] symbols) {
+            for (String symbol : symbols) {
+                this.symbols.add(symbol);
+            }
+        }
+    }
+}
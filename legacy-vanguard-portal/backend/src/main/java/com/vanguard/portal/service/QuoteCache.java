@@ -0,0 +1,118 @@
+package com.vanguard.portal.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-symbol quote cache with a time-to-live and a maximum size.
+ *
+ * Entries older than the TTL are treated as misses; once the cache is full the
+ * least recently used symbol is evicted. Hit, miss and eviction counters are
+ * kept for monitoring. All access is synchronized on the cache; lookups are
+ * cheap compared to the SOAP round trip they replace.
+ *
+ * @author Legacy Team
+ * @since 2012
+ */
+public class QuoteCache {
+
+    private volatile long ttlMillis;
+    private volatile int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final LinkedHashMap<String, CachedQuote> entries = new LinkedHashMap<String, CachedQuote>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedQuote> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public QuoteCache(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the fresh cached prices for the given symbols. Symbols that are
+     * missing or expired are absent from the result and counted as misses.
+     */
+    public synchronized Map<String, BigDecimal> getAll(Collection<String> symbols) {
+        Map<String, BigDecimal> found = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (String symbol : symbols) {
+            CachedQuote quote = entries.get(symbol);
+            if (quote != null && now - quote.fetchedAt <= ttlMillis) {
+                found.put(symbol, quote.price);
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+
+        return found;
+    }
+
+    public synchronized void putAll(Map<String, BigDecimal> quotes) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, BigDecimal> entry : quotes.entrySet()) {
+            entries.put(entry.getKey(), new CachedQuote(entry.getValue(), now));
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : hits.get() / (double) total;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private static final class CachedQuote {
+        private final BigDecimal price;
+        private final long fetchedAt;
+
+        private CachedQuote(BigDecimal price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.vanguard.portal.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Produces the simulated returns of every position for one Monte Carlo scenario.
+ *
+ * Implementations are shared by all simulation threads and must be stateless
+ * or otherwise thread-safe; all randomness must come from the supplied RNG so
+ * a run is reproducible from its seed.
+ *
+ * @author Legacy Systems Team
+ * @since 2004
+ */
+public interface ScenarioGenerator {
+
+    /**
+     * Fills {@code returns} with one scenario's return per position.
+     */
+    void nextScenario(SplittableRandom rng, double[] returns);
+}
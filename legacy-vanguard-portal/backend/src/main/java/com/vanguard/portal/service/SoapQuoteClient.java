@@ -0,0 +1,255 @@
+package com.vanguard.portal.service;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe client for the legacy SOAP GetQuotes operation.
+ *
+ * Replaces the per-call SOAPConnectionFactory / MessageFactory / SAAJ envelope
+ * construction in MarketDataServiceImpl:
+ * - the envelope, including the authentication header, is pre-rendered once and
+ *   only the Symbol elements are appended per request;
+ * - requests go over HttpURLConnection, whose keep-alive cache reuses the
+ *   underlying sockets between calls as long as every response is fully read;
+ * - responses are decoded in one streaming pass by {@link StaxQuoteResponseDecoder};
+ *   the SAAJ/DOM decoder (one MessageFactory per thread) remains selectable;
+ * - connect and read timeouts are enforced, and streams are closed on every path.
+ *
+ * @author Legacy Team
+ * @since 2012
+ */
+@Component("soapQuoteClient")
+public class SoapQuoteClient {
+
+    private static final Logger logger = Logger.getLogger(SoapQuoteClient.class);
+
+    // Legacy SOAP endpoint from 2012 - still in production!
+    static final String DEFAULT_ENDPOINT = "http://marketdata.legacyprovider.com/soap/v1/quotes";
+    static final String SOAP_NAMESPACE = "http://schemas.legacyprovider.com/marketdata/2012";
+
+    // Pre-rendered envelope; legacy credentials are still hardcoded as in the original client
+    private static final String ENVELOPE_PREFIX =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+            "xmlns:md=\"" + SOAP_NAMESPACE + "\">" +
+            "<SOAP-ENV:Header><md:Authentication>" +
+            "<md:Username>vanguard_prod</md:Username>" +
+            "<md:Password>legacy2012</md:Password>" +
+            "</md:Authentication></SOAP-ENV:Header>" +
+            "<SOAP-ENV:Body><md:GetQuotes>";
+    private static final String ENVELOPE_SUFFIX = "</md:GetQuotes></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private static final ThreadLocal<MessageFactory> MESSAGE_FACTORY = new ThreadLocal<MessageFactory>() {
+        @Override
+        protected MessageFactory initialValue() {
+            try {
+                return MessageFactory.newInstance();
+            } catch (SOAPException e) {
+                throw new IllegalStateException("Unable to create SOAP MessageFactory", e);
+            }
+        }
+    };
+
+    public static final String DECODER_STAX = "STAX";
+    public static final String DECODER_DOM = "DOM";
+
+    private final StaxQuoteResponseDecoder staxDecoder = new StaxQuoteResponseDecoder(SOAP_NAMESPACE);
+
+    private volatile URL endpoint;
+    private volatile boolean useStaxDecoder = true;
+    private int connectTimeoutMillis = 2000;
+    private int readTimeoutMillis = 5000;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    public SoapQuoteClient() {
+        setEndpoint(DEFAULT_ENDPOINT);
+    }
+
+    /**
+     * Sends one GetQuotes request for the given symbols.
+     *
+     * @return symbol to last price
+     * @throws IOException on connection, timeout or HTTP errors
+     * @throws SOAPException if the provider answered with a SOAP fault, or the DOM
+     *         decoder cannot parse the response
+     * @throws XMLStreamException if the streaming decoder cannot parse the response
+     */
+    public Map<String, BigDecimal> getQuotes(String[] symbols) throws IOException, SOAPException, XMLStreamException {
+        long start = System.nanoTime();
+        byte[] request = buildRequest(symbols);
+
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(request.length);
+        connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+        connection.setRequestProperty("SOAPAction", "\"\"");
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(request);
+        }
+
+        // SOAP faults are delivered with HTTP 500, so read the error stream for those too
+        int status = connection.getResponseCode();
+        InputStream responseStream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (responseStream == null) {
+            connection.disconnect();
+            throw new IOException("Market data provider returned HTTP " + status + " with no body");
+        }
+
+        try (InputStream in = responseStream) {
+            Map<String, BigDecimal> quotes = useStaxDecoder
+                    ? decodeWithStax(in)
+                    : decodeWithDom(in, connection.getContentType());
+            drain(in);
+            return quotes;
+        } finally {
+            requestCount.incrementAndGet();
+            totalLatencyNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] buildRequest(String[] symbols) {
+        StringBuilder xml = new StringBuilder(ENVELOPE_PREFIX.length() + ENVELOPE_SUFFIX.length() + symbols.length * 32);
+        xml.append(ENVELOPE_PREFIX);
+        for (String symbol : symbols) {
+            xml.append("<md:Symbol>");
+            appendEscaped(xml, symbol);
+            xml.append("</md:Symbol>");
+        }
+        xml.append(ENVELOPE_SUFFIX);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("SOAP Request: " + xml);
+        }
+
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Map<String, BigDecimal> decodeWithStax(InputStream in) throws XMLStreamException, SOAPException {
+        return staxDecoder.decode(in);
+    }
+
+    /**
+     * Original SAAJ decoder: builds the whole envelope as a DOM and searches it per quote.
+     */
+    static Map<String, BigDecimal> decodeWithDom(InputStream in, String contentType) throws IOException, SOAPException {
+        Map<String, BigDecimal> quotes = new HashMap<>();
+
+        MimeHeaders headers = new MimeHeaders();
+        headers.addHeader("Content-Type", contentType != null ? contentType : "text/xml; charset=utf-8");
+        SOAPMessage response = MESSAGE_FACTORY.get().createMessage(headers, in);
+        SOAPBody responseBody = response.getSOAPBody();
+
+        // A fault is a failed call, not an empty quote list
+        if (responseBody.hasFault()) {
+            throw new SOAPException("SOAP Fault: " + responseBody.getFault().getFaultString());
+        }
+
+        org.w3c.dom.NodeList quoteNodes = responseBody.getElementsByTagNameNS(SOAP_NAMESPACE, "Quote");
+
+        for (int i = 0; i < quoteNodes.getLength(); i++) {
+            org.w3c.dom.Node quoteNode = quoteNodes.item(i);
+            if (quoteNode.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
+                org.w3c.dom.Element quoteElement = (org.w3c.dom.Element) quoteNode;
+
+                String symbol = quoteElement.getElementsByTagNameNS(SOAP_NAMESPACE, "Symbol")
+                        .item(0).getTextContent().trim();
+                String priceStr = quoteElement.getElementsByTagNameNS(SOAP_NAMESPACE, "LastPrice")
+                        .item(0).getTextContent();
+
+                quotes.put(symbol, new BigDecimal(priceStr.trim()));
+            }
+        }
+
+        return quotes;
+    }
+
+    /**
+     * Reads any bytes left after the envelope so the socket can go back to the keep-alive cache.
+     * The quotes are already decoded at this point, so a failure here is not an error; the
+     * HTTP stream also closes itself once a decoder has read it to the end.
+     */
+    private static void drain(InputStream in) {
+        byte[] buffer = new byte[512];
+        try {
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException e) {
+            logger.debug("Response stream already closed after decoding");
+        }
+    }
+
+    private static void appendEscaped(StringBuilder xml, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': xml.append("&lt;"); break;
+                case '>': xml.append("&gt;"); break;
+                case '&': xml.append("&amp;"); break;
+                case '"': xml.append("&quot;"); break;
+                case '\'': xml.append("&apos;"); break;
+                default: xml.append(c);
+            }
+        }
+    }
+
+    /** Number of GetQuotes requests sent. */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** Average round-trip latency in milliseconds, including request building and parsing. */
+    public double getAverageLatencyMillis() {
+        long count = requestCount.get();
+        return count == 0 ? 0.0 : totalLatencyNanos.get() / 1000000.0 / count;
+    }
+
+    @Value("${marketdata.soap.endpoint:" + DEFAULT_ENDPOINT + "}")
+    public void setEndpoint(String endpoint) {
+        try {
+            this.endpoint = new URL(endpoint);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid market data endpoint: " + endpoint, e);
+        }
+    }
+
+    @Value("${marketdata.soap.decoder:STAX}")
+    public void setDecoder(String decoder) {
+        this.useStaxDecoder = !DECODER_DOM.equalsIgnoreCase(decoder);
+    }
+
+    @Value("${marketdata.soap.connectTimeoutMillis:2000}")
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    @Value("${marketdata.soap.readTimeoutMillis:5000}")
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+}
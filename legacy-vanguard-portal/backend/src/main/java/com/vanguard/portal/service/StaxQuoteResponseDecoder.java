@@ -0,0 +1,115 @@
+package com.vanguard.portal.service;
+
+import javax.xml.soap.SOAPException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming decoder for GetQuotes responses.
+ *
+ * Reads the Quote / Symbol / LastPrice elements in a single forward pass with
+ * StAX instead of building a DOM for the whole envelope and searching it with
+ * getElementsByTagNameNS once per quote. Memory stays proportional to the
+ * result map, and cost grows linearly with the number of quotes.
+ *
+ * Thread-safe: the factory is configured once and each call uses its own reader.
+ *
+ * @author Legacy Team
+ * @since 2012
+ */
+public class StaxQuoteResponseDecoder {
+
+    private static final String SOAP_ENV_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    private final XMLInputFactory inputFactory;
+    private final String quoteNamespace;
+
+    public StaxQuoteResponseDecoder(String quoteNamespace) {
+        this.quoteNamespace = quoteNamespace;
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Decodes a GetQuotes response.
+     *
+     * @return symbol to last price
+     * @throws SOAPException if the response is a SOAP fault
+     */
+    public Map<String, BigDecimal> decode(InputStream in) throws XMLStreamException, SOAPException {
+        Map<String, BigDecimal> quotes = new HashMap<>();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+
+        try {
+            boolean inQuote = false;
+            String symbol = null;
+            String price = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    String namespace = reader.getNamespaceURI();
+
+                    if (SOAP_ENV_NAMESPACE.equals(namespace) && "Fault".equals(name)) {
+                        throw new SOAPException("SOAP Fault: " + readFaultString(reader));
+                    }
+
+                    if (!quoteNamespace.equals(namespace)) {
+                        continue;
+                    }
+
+                    if ("Quote".equals(name)) {
+                        inQuote = true;
+                        symbol = null;
+                        price = null;
+                    } else if (inQuote && "Symbol".equals(name)) {
+                        symbol = reader.getElementText().trim();
+                    } else if (inQuote && "LastPrice".equals(name)) {
+                        price = reader.getElementText().trim();
+                    }
+
+                } else if (event == XMLStreamConstants.END_ELEMENT
+                        && inQuote && "Quote".equals(reader.getLocalName())
+                        && quoteNamespace.equals(reader.getNamespaceURI())) {
+                    if (symbol != null && price != null) {
+                        quotes.put(symbol, new BigDecimal(price));
+                    }
+                    inQuote = false;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return quotes;
+    }
+
+    /**
+     * Reads the faultstring of a SOAP 1.1 fault; the reader is positioned on the Fault element.
+     */
+    private static String readFaultString(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (reader.hasNext() && depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("faultstring".equals(reader.getLocalName())) {
+                    return reader.getElementText();
+                }
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return "(no faultstring)";
+    }
+}
@@ -46,9 +46,8 @@ public class AccountsOverviewServlet extends HttpServlet {
      * This method retrieves customer account data and forwards to the JSP view.
      *
      * Performance characteristics:
-     * - Average response time: 2-3 seconds (due to N+1 queries in BalanceService)
      * - Peak load: 500+ requests/minute during market open
-     * - Database queries per request: 15-25 (scales with number of accounts)
+     * - Database queries per request: 1 (account summary is fetched set-based)
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -68,10 +67,10 @@ public class AccountsOverviewServlet extends HttpServlet {
         logger.info("Loading accounts overview for customer: " + customerId);
 
         try {
-            // Retrieve account summary - this triggers the N+1 query problem
+            // Retrieve account summary in a single round trip
             Map<String, Object> accountSummary = balanceService.getCustomerAccountSummary(customerId);
 
-            // Extract summary data for display
+            // Headline totals come from the same rows as the account list, so they always agree
             BigDecimal totalBalance = (BigDecimal) accountSummary.get("totalBalance");
             Integer accountCount = (Integer) accountSummary.get("accountCount");
 
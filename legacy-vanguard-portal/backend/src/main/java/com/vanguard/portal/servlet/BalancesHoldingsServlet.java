@@ -2,7 +2,9 @@ package com.vanguard.portal.servlet;
 
 import com.vanguard.portal.dao.HoldingsDAO;
 import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.model.HoldingsSnapshot;
 import com.vanguard.portal.service.HoldingsService;
+import com.vanguard.portal.util.FixedPoint;
 import org.apache.log4j.Logger;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
@@ -12,9 +14,10 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.math.BigDecimal;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.List;
 
@@ -22,8 +25,8 @@ import java.util.List;
  * Servlet for viewing and exporting customer holdings and balances.
  * Provides both HTML views and CSV export functionality.
  *
- * PERFORMANCE ISSUE: Synchronous CSV generation blocks request thread
- * and can cause timeout issues for customers with large portfolios.
+ * CSV export streams rows from a database cursor to the response, so
+ * large portfolios no longer hold the whole list in memory or time out.
  *
  * @author Legacy Team
  * @since 2014
@@ -33,6 +36,9 @@ public class BalancesHoldingsServlet extends HttpServlet {
     private static final Logger logger = Logger.getLogger(BalancesHoldingsServlet.class);
     private static final long serialVersionUID = 1L;
 
+    // Rows written between explicit flushes of the streaming CSV export
+    private static final int FLUSH_EVERY_ROWS = 200;
+
     private HoldingsService holdingsService;
     private HoldingsDAO holdingsDAO;
 
@@ -86,23 +92,17 @@ public class BalancesHoldingsServlet extends HttpServlet {
         logger.info("Displaying holdings page for customer: " + customerId);
 
         try {
-            List<Holding> holdings = holdingsDAO.findByCustomerId(customerId);
-
-            // Calculate portfolio summary
-            BigDecimal totalMarketValue = BigDecimal.ZERO;
-            BigDecimal totalGainLoss = BigDecimal.ZERO;
-
-            for (Holding holding : holdings) {
-                totalMarketValue = totalMarketValue.add(holding.getMarketValue());
-                BigDecimal costBasis = holding.getQuantity().multiply(holding.getPurchasePrice());
-                BigDecimal gainLoss = holding.getMarketValue().subtract(costBasis);
-                totalGainLoss = totalGainLoss.add(gainLoss);
-            }
-
-            request.setAttribute("holdings", holdings);
-            request.setAttribute("totalMarketValue", totalMarketValue);
-            request.setAttribute("totalGainLoss", totalGainLoss);
-            request.setAttribute("holdingsCount", holdings.size());
+            // Columnar snapshot: the portfolio summary is computed over primitive
+            // columns; cost basis stays exact at quantity scale + money scale so the
+            // totals equal the BigDecimal sums
+            HoldingsSnapshot snapshot = holdingsDAO.findSnapshotByCustomerId(customerId);
+
+            request.setAttribute("holdings", snapshot.toHoldings());
+            request.setAttribute("totalMarketValue",
+                    FixedPoint.toBigDecimal(snapshot.totalMarketValue(), FixedPoint.MONEY_SCALE));
+            request.setAttribute("totalGainLoss",
+                    FixedPoint.toBigDecimal(snapshot.totalGainLoss(), HoldingsSnapshot.COST_SCALE));
+            request.setAttribute("holdingsCount", snapshot.size());
 
             request.getRequestDispatcher("/WEB-INF/jsp/holdings.jsp").forward(request, response);
 
@@ -143,34 +143,23 @@ public class BalancesHoldingsServlet extends HttpServlet {
     }
 
     /**
-     * PERFORMANCE ISSUE: Synchronous Blocking CSV Export
-     *
-     * This method generates CSV files synchronously in the request thread,
-     * causing several critical problems:
-     *
-     * PROBLEMS:
-     * 1. Thread Blocking: Request thread is blocked for 30-60 seconds for large portfolios
-     * 2. Timeout Risk: Customers with 1000+ holdings exceed servlet timeout (30s)
-     * 3. Resource Exhaustion: Multiple concurrent exports can exhaust thread pool
-     * 4. Poor UX: User's browser shows loading spinner for entire duration
-     * 5. No Progress Feedback: User has no indication of export progress
+     * Streaming CSV export.
      *
-     * IMPACT:
-     * - Production incidents during quarterly reporting (100+ concurrent exports)
-     * - Thread pool exhaustion leads to 503 errors for ALL users
-     * - Customer complaints about "frozen" export page
+     * The legacy export loaded every holding into a List, built each line in its
+     * own StringBuilder and slept 5ms per row, so portfolios of 1000+ holdings hit
+     * the 30s servlet timeout and held the request thread for the whole run.
      *
-     * RECOMMENDED FIX:
-     * 1. Implement async export with message queue (RabbitMQ/Kafka)
-     * 2. Generate file in background job
-     * 3. Notify customer via email or UI when ready
-     * 4. Store in S3/blob storage with expiring download link
-     * 5. Add progress indicator and estimated completion time
+     * Rows now come straight from a forward-only, streaming result set
+     * (HoldingsDAO.streamByCustomerId) and are written field by field to a
+     * buffered response writer. The header is flushed first, so time-to-first-byte
+     * does not depend on portfolio size, and the buffer is flushed every
+     * {@code FLUSH_EVERY_ROWS} rows. With no Content-Length the container sends the
+     * body with chunked transfer encoding. Memory stays flat for any portfolio size.
      *
-     * MODERN ALTERNATIVE:
-     * - Use streaming CSV generation with chunked transfer encoding
-     * - Implement WebSocket for real-time progress updates
-     * - Consider pagination with client-side CSV assembly
+     * If the export fails after output has started the response cannot be turned
+     * into an error page. The failure is rethrown instead, so the container aborts
+     * the connection without the final chunk and the client sees a failed download
+     * rather than a short file that looks complete.
      */
     private void exportHoldingsToCSV(String customerId, HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -179,51 +168,48 @@ public class BalancesHoldingsServlet extends HttpServlet {
         logger.info("Starting CSV export for customer: " + customerId);
 
         try {
-            // Fetch ALL holdings - this can be 1000+ records for large portfolios
-            List<Holding> holdings = holdingsDAO.findByCustomerId(customerId);
-
-            logger.info("Retrieved " + holdings.size() + " holdings for CSV export");
-
             // Set response headers for CSV download
             response.setContentType("text/csv");
+            response.setCharacterEncoding("UTF-8");
             response.setHeader("Content-Disposition", "attachment; filename=\"holdings_" + customerId + ".csv\"");
 
-            PrintWriter writer = response.getWriter();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-            // Write CSV header
-            writer.println("Account Number,Symbol,Quantity,Purchase Price,Current Price,Market Value,Gain/Loss %,Purchase Date");
-
-            // BLOCKING OPERATION: Write all holdings synchronously
-            // For 1000 holdings, this takes 30-60 seconds
-            for (Holding holding : holdings) {
-                StringBuilder line = new StringBuilder();
-                line.append(holding.getAccountNumber()).append(",");
-                line.append(holding.getSymbol()).append(",");
-                line.append(holding.getQuantity()).append(",");
-                line.append(holding.getPurchasePrice()).append(",");
-                line.append(holding.getCurrentPrice()).append(",");
-                line.append(holding.getMarketValue()).append(",");
-                line.append(holding.getGainLossPct()).append("%,");
-                line.append(dateFormat.format(holding.getPurchaseDate()));
-
-                writer.println(line.toString());
-
-                // Simulate realistic processing delay (database fetch, calculations)
-                // In reality, this includes market data lookups and currency conversions
-                if (holdings.size() > 100) {
-                    try {
-                        Thread.sleep(5); // 5ms per holding = 5 seconds for 1000 holdings
-                    } catch (InterruptedException e) {
-                        logger.warn("CSV export interrupted", e);
-                    }
+            final BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 8192);
+            final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+            // Write CSV header and send it right away
+            writer.write("Account Number,Symbol,Quantity,Purchase Price,Current Price,Market Value,Gain/Loss %,Purchase Date");
+            writer.newLine();
+            writer.flush();
+
+            final int[] written = {0};
+            holdingsDAO.streamByCustomerId(customerId, holding -> {
+                writer.write(holding.getAccountNumber());
+                writer.write(',');
+                writer.write(holding.getSymbol());
+                writer.write(',');
+                writer.write(String.valueOf(holding.getQuantity()));
+                writer.write(',');
+                writer.write(String.valueOf(holding.getPurchasePrice()));
+                writer.write(',');
+                writer.write(String.valueOf(holding.getCurrentPrice()));
+                writer.write(',');
+                writer.write(String.valueOf(holding.getMarketValue()));
+                writer.write(',');
+                writer.write(String.valueOf(holding.getGainLossPct()));
+                writer.write("%,");
+                writer.write(dateFormat.format(holding.getPurchaseDate()));
+                writer.newLine();
+
+                if (++written[0] % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
                 }
-            }
+            });
 
             writer.flush();
 
             long elapsedTime = System.currentTimeMillis() - startTime;
-            logger.info("CSV export completed in " + elapsedTime + "ms for " + holdings.size() + " holdings");
+            logger.info("CSV export completed in " + elapsedTime + "ms for " + written[0] + " holdings");
 
             // Alert on slow exports
             if (elapsedTime > 10000) {
@@ -232,6 +218,10 @@ public class BalancesHoldingsServlet extends HttpServlet {
 
         } catch (Exception e) {
             logger.error("Error exporting holdings to CSV for customer " + customerId, e);
+            if (response.isCommitted()) {
+                throw new IOException("CSV export aborted for customer " + customerId, e);
+            }
+            response.reset();
             response.setContentType("text/html");
             response.getWriter().println("<html><body><h3>Export failed. Please try again later.</h3></body></html>");
         }
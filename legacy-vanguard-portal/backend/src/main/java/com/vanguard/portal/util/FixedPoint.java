@@ -0,0 +1,122 @@
+package com.vanguard.portal.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Scaled-long arithmetic for money, prices and quantities.
+ *
+ * A value is held as a long count of 10^-scale units, matching the schema:
+ * money columns are DECIMAL(15,2) (scale 2), quantities DECIMAL(15,4) (scale 4)
+ * and gain_loss_pct DECIMAL(8,4) (scale 4). Convert a BigDecimal once on the way
+ * in and once on the way out; loops in between add and multiply longs instead
+ * of allocating a BigDecimal per intermediate result.
+ *
+ * Rounding is HALF_UP, as in the BigDecimal code it replaces. When an
+ * intermediate product overflows a long, multiply and percentChange redo the
+ * step in BigDecimal; ArithmeticException is thrown only if the result itself
+ * does not fit, never a wrapped value.
+ */
+public final class FixedPoint {
+
+    public static final int MONEY_SCALE = 2;
+    public static final int QUANTITY_SCALE = 4;
+    public static final int PRICE_SCALE = 4;
+    public static final int PERCENT_SCALE = 4;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Converts to a scaled long, rounding HALF_UP if the value has more digits than the scale.
+     * A null value is treated as zero.
+     */
+    public static long toScaled(BigDecimal value, int scale) {
+        if (value == null) {
+            return 0L;
+        }
+        // setScale returns the same instance when the scale already matches
+        return value.setScale(scale, RoundingMode.HALF_UP).movePointRight(scale).longValueExact();
+    }
+
+    /**
+     * The smallest scale of at least {@code minScale} that holds the value without
+     * rounding. Values already within minScale, the usual case, are not copied.
+     */
+    public static int exactScale(BigDecimal value, int minScale) {
+        if (value.scale() <= minScale) {
+            return minScale;
+        }
+        return Math.max(minScale, value.stripTrailingZeros().scale());
+    }
+
+    public static BigDecimal toBigDecimal(long scaled, int scale) {
+        return BigDecimal.valueOf(scaled, scale);
+    }
+
+    /**
+     * Changes the scale of a scaled long, rounding HALF_UP when digits are dropped.
+     */
+    public static long rescale(long value, int fromScale, int toScale) {
+        if (toScale >= fromScale) {
+            return Math.multiplyExact(value, POWERS_OF_TEN[toScale - fromScale]);
+        }
+        return divideHalfUp(value, POWERS_OF_TEN[fromScale - toScale]);
+    }
+
+    /**
+     * Multiplies two scaled longs and returns the product at {@code resultScale}.
+     * The product is exact when resultScale equals scaleA + scaleB.
+     */
+    public static long multiply(long a, int scaleA, long b, int scaleB, int resultScale) {
+        long product;
+        try {
+            product = Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            // e.g. 200,000 shares at $600k with both at scale 4; the rounded result still fits
+            return BigDecimal.valueOf(a, scaleA).multiply(BigDecimal.valueOf(b, scaleB))
+                    .setScale(resultScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        return rescale(product, scaleA + scaleB, resultScale);
+    }
+
+    /**
+     * Percentage change from {@code base} to {@code value}, both at the same scale,
+     * at PERCENT_SCALE. Matches
+     * {@code value.subtract(base).divide(base, 4, HALF_UP).multiply(new BigDecimal("100"))}.
+     *
+     * @throws ArithmeticException if base is zero
+     */
+    public static long percentChange(long value, long base) {
+        long ratio;
+        try {
+            ratio = divideHalfUp(Math.multiplyExact(Math.subtractExact(value, base), POWERS_OF_TEN[PERCENT_SCALE]), base);
+        } catch (ArithmeticException e) {
+            if (base == 0) {
+                throw e;
+            }
+            ratio = BigDecimal.valueOf(value).subtract(BigDecimal.valueOf(base))
+                    .divide(BigDecimal.valueOf(base), PERCENT_SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        }
+        return Math.multiplyExact(ratio, 100L);
+    }
+
+    /**
+     * Integer division rounding HALF_UP (ties away from zero).
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+}
@@ -14,7 +14,8 @@ CREATE TABLE IF NOT EXISTS accounts (
     open_date DATE NOT NULL,
     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_customer_id (customer_id),
-    INDEX idx_account_type (account_type)
+    INDEX idx_account_type (account_type),
+    INDEX idx_last_updated (last_updated)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- Balances table
@@ -26,7 +27,8 @@ CREATE TABLE IF NOT EXISTS balances (
     pending_balance DECIMAL(15,2) DEFAULT 0.00,
     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (account_number) REFERENCES accounts(account_number),
-    UNIQUE KEY uk_account_number (account_number)
+    UNIQUE KEY uk_account_number (account_number),
+    INDEX idx_last_updated (last_updated)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- Holdings table
@@ -44,6 +46,7 @@ CREATE TABLE IF NOT EXISTS holdings (
     FOREIGN KEY (account_number) REFERENCES accounts(account_number),
     INDEX idx_account_number (account_number),
     INDEX idx_symbol (symbol),
+    INDEX idx_last_updated (last_updated),
     UNIQUE KEY uk_account_symbol (account_number, symbol)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
@@ -64,6 +67,10 @@ CREATE TABLE IF NOT EXISTS transactions (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- Balance summary table (populated by nightly batch job)
+-- One row per customer: the unique key is what makes the ON DUPLICATE KEY UPDATE
+-- upserts in sp_aggregate_customer_balance and BalanceSummaryAggregator idempotent.
+-- Existing databases: ALTER TABLE balance_summary DROP INDEX idx_customer_id,
+--                     ADD UNIQUE KEY uk_customer_id (customer_id);
 CREATE TABLE IF NOT EXISTS balance_summary (
     summary_id BIGINT AUTO_INCREMENT PRIMARY KEY,
     customer_id VARCHAR(20) NOT NULL,
@@ -72,7 +79,40 @@ CREATE TABLE IF NOT EXISTS balance_summary (
     total_cash DECIMAL(18,2) DEFAULT 0.00,
     account_count INT DEFAULT 0,
     last_aggregated TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    INDEX idx_customer_id (customer_id)
+    UNIQUE KEY uk_customer_id (customer_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Batch job run state. last_completed_run is the start time of the last run that
+-- finished; the incremental aggregation recomputes customers changed since then.
+CREATE TABLE IF NOT EXISTS batch_job_state (
+    job_name VARCHAR(50) NOT NULL PRIMARY KEY,
+    run_started TIMESTAMP NULL,
+    last_completed_run TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Batch job checkpoints (one row per key-range partition of a job run; job_name
+-- carries the execution mode, e.g. BALANCE_AGGREGATION.PARTITIONED)
+-- last_customer_id is written in the same transaction as each committed block,
+-- so a resumed run continues right after it.
+CREATE TABLE IF NOT EXISTS batch_job_checkpoint (
+    job_name VARCHAR(50) NOT NULL,
+    partition_index INT NOT NULL,
+    lower_bound VARCHAR(20),
+    upper_bound VARCHAR(20),
+    last_customer_id VARCHAR(20),
+    status VARCHAR(20) DEFAULT 'PENDING',
+    last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, partition_index)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Customers that failed during a batch job run and are waiting to be retried
+CREATE TABLE IF NOT EXISTS batch_job_retry (
+    job_name VARCHAR(50) NOT NULL,
+    customer_id VARCHAR(20) NOT NULL,
+    attempts INT DEFAULT 1,
+    last_error VARCHAR(255),
+    last_failed TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, customer_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- ============================================================================
@@ -185,6 +225,14 @@ BEGIN
 
 END$$
 
+-- A deleted holding leaves no last_updated behind for the incremental balance
+-- aggregation to find, so touch its account instead
+CREATE TRIGGER trg_holdings_after_delete AFTER DELETE ON holdings
+FOR EACH ROW
+BEGIN
+    UPDATE accounts SET last_updated = NOW() WHERE account_number = OLD.account_number;
+END$$
+
 DELIMITER ;
 
 -- Sample data for testing
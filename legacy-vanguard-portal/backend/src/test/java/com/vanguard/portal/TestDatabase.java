@@ -0,0 +1,159 @@
+package com.vanguard.portal;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * In-memory H2 database in MySQL mode carrying the tables from schema.sql.
+ *
+ * Doubles as the DataSource handed to the DAOs under test. Every statement
+ * prepared through it is counted, and the few MySQL-only fragments the DAOs
+ * use are rewritten to their H2 equivalents on the way through, so the
+ * production SQL is exercised as written everywhere else.
+ */
+public class TestDatabase implements DataSource {
+
+    private static final AtomicInteger DATABASE_IDS = new AtomicInteger();
+
+    private final String url;
+    private final AtomicInteger statementCount = new AtomicInteger();
+    private final Connection keepAlive;
+
+    public TestDatabase() {
+        this.url = "jdbc:h2:mem:portal" + DATABASE_IDS.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        try {
+            this.keepAlive = DriverManager.getConnection(url);
+            loadSchema();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create test database", e);
+        }
+    }
+
+    /** Runs a statement directly, bypassing the statement counter. */
+    public void execute(String sql) {
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute(rewrite(sql));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Test SQL failed: " + sql, e);
+        }
+    }
+
+    /** Statements prepared through this DataSource since the last reset. */
+    public int getStatementCount() {
+        return statementCount.get();
+    }
+
+    public void resetStatementCount() {
+        statementCount.set(0);
+    }
+
+    public void shutdown() {
+        execute("SHUTDOWN");
+    }
+
+    static String rewrite(String sql) {
+        return sql.replace("DATE_SUB(NOW(), INTERVAL ? DAY)", "DATEADD(DAY, -1 * ?, NOW())")
+                .replace("<=>", "IS NOT DISTINCT FROM");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Connection target = DriverManager.getConnection(url);
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("prepareCall") || name.equals("createStatement")) {
+                statementCount.incrementAndGet();
+                if (args != null && args.length > 0 && args[0] instanceof String) {
+                    args[0] = rewrite((String) args[0]);
+                }
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, handler);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Table DDL from schema.sql, up to the stored procedure section. Secondary
+     * indexes are dropped: their names repeat across tables, which MySQL allows
+     * and H2 does not.
+     */
+    private void loadSchema() throws SQLException {
+        String script;
+        try (InputStream in = TestDatabase.class.getClassLoader().getResourceAsStream("schema.sql");
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+            script = scanner.useDelimiter("\\A").next();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read schema.sql", e);
+        }
+
+        int procedures = script.indexOf("DELIMITER");
+        String ddl = (procedures >= 0 ? script.substring(0, procedures) : script)
+                .replaceAll("(?m)^\\s*--.*$", "")
+                .replaceAll(",\\s*INDEX \\w+ \\([^)]*\\)", "");
+
+        try (Statement stmt = keepAlive.createStatement()) {
+            for (String sql : ddl.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("Not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.vanguard.portal;
+
+import java.lang.reflect.Field;
+
+/**
+ * Wiring helpers for tests that build beans by hand instead of through Spring.
+ */
+public final class TestSupport {
+
+    private TestSupport() {
+    }
+
+    /** Sets a private (typically {@code @Autowired}) field the way Spring would. */
+    public static void inject(Object target, String fieldName, Object value) {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // keep looking in the superclass
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass());
+    }
+}
@@ -0,0 +1,278 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.dao.AccountDAOImpl;
+import com.vanguard.portal.model.Account;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BalanceAggregationJobTest {
+
+    // Customers passed to the stand-in procedure, in call order
+    private static final List<String> PROCEDURE_CALLS = Collections.synchronizedList(new ArrayList<String>());
+
+    private TestDatabase database;
+    private AggregationCheckpointStore checkpointStore;
+    private BalanceAggregationJob job;
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase();
+        PROCEDURE_CALLS.clear();
+        checkpointStore = new AggregationCheckpointStore();
+
+        job = new BalanceAggregationJob();
+        TestSupport.inject(job, "dataSource", database);
+        TestSupport.inject(job, "balanceSummaryAggregator", new BalanceSummaryAggregator());
+        TestSupport.inject(job, "checkpointStore", checkpointStore);
+
+        // Stand-in for sp_aggregate_customer_balance that always fails for C2
+        database.execute("CREATE ALIAS sp_aggregate_customer_balance FOR \""
+                + BalanceAggregationJobTest.class.getName() + ".aggregateCustomer\"");
+
+        for (String customerId : new String[] {"C1", "C2", "C3"}) {
+            database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                    + "VALUES ('N" + customerId + "', '" + customerId + "', 'IRA', 'ACTIVE', CURRENT_DATE)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    public static void aggregateCustomer(String customerId) throws SQLException {
+        PROCEDURE_CALLS.add(customerId);
+        if ("C2".equals(customerId)) {
+            throw new SQLException("simulated failure for " + customerId);
+        }
+    }
+
+    @Test
+    public void sequentialFailuresGoToRetryList() throws SQLException {
+        job.aggregateCustomerBalances();
+
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT customer_id, attempts FROM batch_job_retry WHERE job_name = ?")) {
+            stmt.setString(1, BalanceAggregationJob.JOB_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                assertEquals("C2", rs.getString("customer_id"));
+                // Once from the loop, once more from the retry pass at the end of the run
+                assertEquals(2, rs.getInt("attempts"));
+                assertEquals(false, rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void sequentialRunResumesAfterItsCheckpoint() throws SQLException {
+        job.aggregateCustomerBalances();
+        assertEquals(Arrays.asList("C1", "C2", "C3", "C2"), PROCEDURE_CALLS);
+
+        // The run died after committing C1: its checkpoint is back to pending after C1
+        String checkpoint = BalanceAggregationJob.checkpointName(BalanceAggregationJob.MODE_SEQUENTIAL);
+        try (Connection conn = database.getConnection()) {
+            checkpointStore.resetPartitions(conn, checkpoint,
+                    Collections.singletonList(new CustomerPartition(0, null, null)));
+            checkpointStore.saveProgress(conn, checkpoint, 0, "C1");
+        }
+        PROCEDURE_CALLS.clear();
+
+        job.runManualAggregation(true);
+
+        // C2 and C3 from the checkpoint, then C2 again from the retry list
+        assertEquals(Arrays.asList("C2", "C3", "C2"), PROCEDURE_CALLS);
+        try (Connection conn = database.getConnection()) {
+            assertTrue(checkpointStore.loadUnfinishedPartitions(conn, checkpoint).isEmpty());
+        }
+    }
+
+    @Test
+    public void resumeIgnoresAnotherModesCheckpoint() throws SQLException {
+        // A partitioned run that never finished, while the job is configured as sequential
+        String partitioned = BalanceAggregationJob.checkpointName(BalanceAggregationJob.MODE_PARTITIONED);
+        try (Connection conn = database.getConnection()) {
+            checkpointStore.resetPartitions(conn, partitioned,
+                    Arrays.asList(new CustomerPartition(0, null, "C2"), new CustomerPartition(1, "C2", null)));
+        }
+
+        job.runManualAggregation(true);
+
+        // No sequential checkpoint: nothing runs, and the partitioned checkpoint is left alone
+        assertTrue(PROCEDURE_CALLS.isEmpty());
+        assertTrue(summaryCash().isEmpty());
+        try (Connection conn = database.getConnection()) {
+            assertEquals(2, checkpointStore.loadUnfinishedPartitions(conn, partitioned).size());
+        }
+    }
+
+    @Test
+    public void incrementalRunPicksUpClosedAccounts() throws Exception {
+        // C1 holds two accounts, C2 and C3 one each; every account has a balance
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                + "VALUES ('N1B', 'C1', 'BROKERAGE', 'ACTIVE', CURRENT_DATE)");
+        database.execute("INSERT INTO balances (account_number, current_balance) VALUES "
+                + "('NC1', 100.00), ('N1B', 200.00), ('NC2', 50.00), ('NC3', 70.00)");
+
+        // The first incremental run has no watermark yet and rebuilds everything
+        job.setExecutionMode(BalanceAggregationJob.MODE_INCREMENTAL);
+        job.aggregateCustomerBalances();
+        assertEquals(Integer.valueOf(300), summaryCash().get("C1"));
+        assertEquals(2, accountCount("C1"));
+        Thread.sleep(20);
+
+        // C1 closes one of two accounts, C2 its only one; C3 does not change
+        AccountDAOImpl accountDAO = new AccountDAOImpl();
+        TestSupport.inject(accountDAO, "dataSource", database);
+        for (String accountNumber : new String[] {"N1B", "NC2"}) {
+            Account account = accountDAO.findByAccountNumber(accountNumber);
+            account.setStatus("CLOSED");
+            accountDAO.update(account);
+        }
+        // Marks C3's row so a recompute of an unchanged customer would show
+        database.execute("UPDATE balance_summary SET total_cash = 999.00 WHERE customer_id = 'C3'");
+
+        job.aggregateCustomerBalances();
+
+        Map<String, Integer> cash = summaryCash();
+        assertEquals(Integer.valueOf(100), cash.get("C1"));
+        assertEquals(1, accountCount("C1"));
+        assertEquals(Integer.valueOf(0), cash.get("C2"));
+        assertEquals(0, accountCount("C2"));
+        assertEquals(Integer.valueOf(999), cash.get("C3"));
+    }
+
+    @Test
+    public void incrementalRunDoesNotMovePartitionedRunStart() throws Exception {
+        String job = BalanceAggregationJob.JOB_NAME;
+
+        try (Connection conn = database.getConnection()) {
+            Timestamp partitionedStart = checkpointStore.startRun(conn, job, BalanceAggregationJob.MODE_PARTITIONED);
+            assertNull(checkpointStore.loadLastCompletedRun(conn, job));
+            Thread.sleep(20);
+
+            // An incremental run starts and completes while the partitioned run awaits resume
+            Timestamp incrementalStart = checkpointStore.startRun(conn, job, BalanceAggregationJob.MODE_INCREMENTAL);
+            checkpointStore.completeRun(conn, job, BalanceAggregationJob.MODE_INCREMENTAL);
+            assertEquals(incrementalStart, checkpointStore.loadLastCompletedRun(conn, job));
+
+            // Resumed partitioned run finishes: its own start is kept, the watermark does not go back
+            checkpointStore.completeRun(conn, job, BalanceAggregationJob.MODE_PARTITIONED);
+            assertEquals(incrementalStart, checkpointStore.loadLastCompletedRun(conn, job));
+
+            Thread.sleep(20);
+            Timestamp nextPartitionedStart = checkpointStore.startRun(conn, job, BalanceAggregationJob.MODE_PARTITIONED);
+            checkpointStore.completeRun(conn, job, BalanceAggregationJob.MODE_PARTITIONED);
+            assertEquals(nextPartitionedStart, checkpointStore.loadLastCompletedRun(conn, job));
+            assertEquals(true, partitionedStart.before(nextPartitionedStart));
+        }
+    }
+
+    @Test
+    public void partitionedRunCoversEveryCustomerOnce() throws SQLException {
+        // 40 more customers with a balance each; P013 has only a closed account
+        for (int c = 1; c <= 40; c++) {
+            String customerId = String.format("P%03d", c);
+            database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                    + "VALUES ('N" + customerId + "', '" + customerId + "', 'IRA', '"
+                    + (c == 13 ? "CLOSED" : "ACTIVE") + "', CURRENT_DATE)");
+            database.execute("INSERT INTO balances (account_number, current_balance) VALUES ('N" + customerId
+                    + "', " + c + ".00)");
+        }
+
+        job.setExecutionMode(BalanceAggregationJob.MODE_PARTITIONED);
+        job.setPartitionCount(5);
+        job.setWorkerCount(3);
+        job.setCommitBatchSize(4);
+        job.aggregateCustomerBalances();
+
+        // 42 active customers in 5 ranges: open at both ends, each upper bound the next lower bound
+        List<String[]> partitions = checkpointRows();
+        assertEquals(5, partitions.size());
+        assertNull(partitions.get(0)[0]);
+        assertNull(partitions.get(4)[1]);
+        for (int i = 0; i < partitions.size(); i++) {
+            String[] partition = partitions.get(i);
+            if (i > 0) {
+                assertEquals(partitions.get(i - 1)[1], partition[0]);
+            }
+            assertEquals(AggregationCheckpointStore.STATUS_COMPLETED, partition[3]);
+            // The last committed customer lies inside its own range
+            assertTrue(partition[0] == null || partition[2].compareTo(partition[0]) >= 0);
+            assertTrue(partition[1] == null || partition[2].compareTo(partition[1]) < 0);
+        }
+
+        Map<String, Integer> summaries = summaryCash();
+        assertEquals(42, summaries.size());
+        for (int c = 1; c <= 40; c++) {
+            String customerId = String.format("P%03d", c);
+            assertEquals(customerId, c == 13 ? null : Integer.valueOf(c), summaries.get(customerId));
+        }
+        // Customers on either side of every boundary were aggregated
+        for (String[] partition : partitions) {
+            if (partition[0] != null) {
+                assertTrue(partition[0], summaries.containsKey(partition[0]));
+            }
+        }
+    }
+
+    /** lower_bound, upper_bound, last_customer_id and status of each partition, in order. */
+    private List<String[]> checkpointRows() throws SQLException {
+        List<String[]> rows = new ArrayList<>();
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT lower_bound, upper_bound, last_customer_id, "
+                     + "status FROM batch_job_checkpoint WHERE job_name = ? ORDER BY partition_index")) {
+            stmt.setString(1, BalanceAggregationJob.checkpointName(BalanceAggregationJob.MODE_PARTITIONED));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new String[] {rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+                }
+            }
+        }
+        return rows;
+    }
+
+    private int accountCount(String customerId) throws SQLException {
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT account_count FROM balance_summary WHERE customer_id = ?")) {
+            stmt.setString(1, customerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private Map<String, Integer> summaryCash() throws SQLException {
+        Map<String, Integer> cash = new TreeMap<>();
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT customer_id, total_cash FROM balance_summary");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                cash.put(rs.getString(1), rs.getBigDecimal(2).intValueExact());
+            }
+        }
+        return cash;
+    }
+}
@@ -0,0 +1,291 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.dao.BalanceDAOImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BalanceSummaryAggregatorTest {
+
+    private static final int CUSTOMERS = 1500;
+
+    private TestDatabase database;
+    private BalanceSummaryAggregator aggregator;
+
+    @Before
+    public void setUp() throws SQLException {
+        database = new TestDatabase();
+        aggregator = new BalanceSummaryAggregator();
+        loadCustomers(database, CUSTOMERS);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void rangeMatchesPerCustomerProcedure() throws SQLException {
+        runProcedure(database, allCustomerIds());
+        Map<String, List<Object>> expected = readSummaries();
+
+        clearSummaries();
+        try (Connection conn = database.getConnection()) {
+            assertEquals(expected.size(), aggregator.aggregateRange(conn, customerId(1), customerId(CUSTOMERS)));
+        }
+
+        assertEquals(expected, readSummaries());
+    }
+
+    @Test
+    public void scatteredCustomersMatchPerCustomerProcedure() throws SQLException {
+        List<String> customerIds = Arrays.asList(customerId(3), customerId(250), customerId(251), customerId(1499));
+        runProcedure(database, customerIds);
+        Map<String, List<Object>> expected = readSummaries();
+
+        clearSummaries();
+        try (Connection conn = database.getConnection()) {
+            assertEquals(expected.size(), aggregator.aggregateCustomers(conn, customerIds));
+        }
+
+        assertEquals(expected, readSummaries());
+    }
+
+    @Test
+    public void balanceChangeDuringAggregationIsKept() throws SQLException {
+        final BalanceDAOImpl balanceDAO = new BalanceDAOImpl();
+        TestSupport.inject(balanceDAO, "dataSource", database);
+
+        final String accountNumber = "N7-0";
+        database.execute("UPDATE accounts SET status = 'ACTIVE' WHERE account_number = '" + accountNumber + "'");
+        try (Connection conn = database.getConnection()) {
+            aggregator.aggregateRange(conn, customerId(1), customerId(CUSTOMERS));
+        }
+        BigDecimal before = (BigDecimal) readSummaries().get(customerId(7)).get(2);
+
+        // The write-through commits between the aggregate read and the upsert
+        try (Connection conn = database.getConnection()) {
+            conn.setAutoCommit(false);
+            aggregator.aggregateRange(beforeUpsert(conn,
+                    () -> balanceDAO.applyBalanceChange(accountNumber, new BigDecimal("250.00"))),
+                    customerId(1), customerId(CUSTOMERS));
+            conn.commit();
+        }
+
+        List<Object> after = readSummaries().get(customerId(7));
+        assertEquals(0, before.add(new BigDecimal("250.00")).compareTo((BigDecimal) after.get(2)));
+
+        // The next run finds nothing moved and rebuilds the same totals from the base tables
+        try (Connection conn = database.getConnection()) {
+            aggregator.aggregateRange(conn, customerId(1), customerId(CUSTOMERS));
+        }
+        assertEquals(after, readSummaries().get(customerId(7)));
+    }
+
+    @Test
+    public void setBasedPassRunsFixedStatementsWhateverTheCustomerCount() throws SQLException {
+        database.resetStatementCount();
+        runProcedure(database, allCustomerIds());
+        int perCustomerStatements = database.getStatementCount();
+
+        database.resetStatementCount();
+        try (Connection conn = database.getConnection()) {
+            aggregator.aggregateRange(conn, customerId(1), customerId(CUSTOMERS));
+        }
+
+        // Zero-out, aggregate and upsert; the procedure needs at least a lookup per customer
+        assertEquals(3, database.getStatementCount());
+        assertTrue(perCustomerStatements > CUSTOMERS);
+    }
+
+    /**
+     * sp_aggregate_customer_balance statement for statement, which H2 cannot run
+     * as a stored procedure: a cursor over the customer's active accounts, one
+     * balance and one holdings lookup per account, then an upsert per customer.
+     * Every fixture account has a balance row, as the procedure requires.
+     */
+    static void runProcedure(DataSource database, List<String> customerIds) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            for (String customerId : customerIds) {
+                BigDecimal totalCash = BigDecimal.ZERO;
+                BigDecimal totalEquity = BigDecimal.ZERO;
+                int accountCount = 0;
+
+                List<String> accountNumbers = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT account_number FROM accounts WHERE customer_id = ? AND status = 'ACTIVE'")) {
+                    stmt.setString(1, customerId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            accountNumbers.add(rs.getString(1));
+                        }
+                    }
+                }
+                if (accountNumbers.isEmpty()) {
+                    continue; // the job only calls the procedure for customers with an active account
+                }
+
+                for (String accountNumber : accountNumbers) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT IFNULL(current_balance, 0.00) FROM balances WHERE account_number = ?")) {
+                        stmt.setString(1, accountNumber);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            rs.next();
+                            totalCash = totalCash.add(rs.getBigDecimal(1));
+                        }
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT IFNULL(SUM(market_value), 0.00) FROM holdings WHERE account_number = ?")) {
+                        stmt.setString(1, accountNumber);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            rs.next();
+                            totalEquity = totalEquity.add(rs.getBigDecimal(1));
+                        }
+                    }
+                    accountCount++;
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO balance_summary (customer_id, total_balance, total_equity, total_cash, "
+                                + "account_count, last_aggregated) VALUES (?, ?, ?, ?, ?, NOW()) "
+                                + "ON DUPLICATE KEY UPDATE total_balance = VALUES(total_balance), "
+                                + "total_equity = VALUES(total_equity), total_cash = VALUES(total_cash), "
+                                + "account_count = VALUES(account_count), last_aggregated = NOW()")) {
+                    stmt.setString(1, customerId);
+                    stmt.setBigDecimal(2, totalCash.add(totalEquity));
+                    stmt.setBigDecimal(3, totalEquity);
+                    stmt.setBigDecimal(4, totalCash);
+                    stmt.setInt(5, accountCount);
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Customers with one to four accounts, some closed, each with a balance and
+     * zero to three holdings. Customers whose only account is closed get no summary.
+     */
+    static void loadCustomers(DataSource database, int count) throws SQLException {
+        Random random = new Random(42);
+
+        try (Connection conn = database.getConnection();
+             PreparedStatement account = conn.prepareStatement("INSERT INTO accounts "
+                     + "(account_number, customer_id, account_type, status, open_date) VALUES (?, ?, 'BROKERAGE', ?, CURRENT_DATE)");
+             PreparedStatement balance = conn.prepareStatement(
+                     "INSERT INTO balances (account_number, current_balance) VALUES (?, ?)");
+             PreparedStatement holding = conn.prepareStatement("INSERT INTO holdings "
+                     + "(account_number, symbol, quantity, purchase_price, market_value, purchase_date) "
+                     + "VALUES (?, ?, 1, 1, ?, CURRENT_DATE)")) {
+
+            for (int c = 1; c <= count; c++) {
+                int accounts = 1 + random.nextInt(4);
+                for (int a = 0; a < accounts; a++) {
+                    String accountNumber = "N" + c + "-" + a;
+                    account.setString(1, accountNumber);
+                    account.setString(2, customerId(c));
+                    account.setString(3, random.nextInt(8) == 0 ? "CLOSED" : "ACTIVE");
+                    account.addBatch();
+
+                    balance.setString(1, accountNumber);
+                    balance.setBigDecimal(2, BigDecimal.valueOf(random.nextInt(10000000) - 1000000, 2));
+                    balance.addBatch();
+
+                    int holdings = random.nextInt(4);
+                    for (int h = 0; h < holdings; h++) {
+                        holding.setString(1, accountNumber);
+                        holding.setString(2, "SYM" + h);
+                        holding.setBigDecimal(3, BigDecimal.valueOf(random.nextInt(50000000), 2));
+                        holding.addBatch();
+                    }
+                }
+            }
+            account.executeBatch();
+            balance.executeBatch();
+            holding.executeBatch();
+        }
+    }
+
+    private Map<String, List<Object>> readSummaries() throws SQLException {
+        Map<String, List<Object>> summaries = new TreeMap<>();
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT customer_id, total_balance, total_equity, total_cash, "
+                     + "account_count FROM balance_summary")) {
+            while (rs.next()) {
+                summaries.put(rs.getString(1), Arrays.<Object>asList(rs.getBigDecimal(2), rs.getBigDecimal(3),
+                        rs.getBigDecimal(4), rs.getInt(5)));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Connection whose balance_summary upserts run {@code concurrentWrite} on
+     * another connection right before they execute.
+     */
+    private static Connection beforeUpsert(final Connection conn, final Runnable concurrentWrite) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(conn, method, args);
+                    if (method.getName().equals("prepareStatement")
+                            && ((String) args[0]).startsWith("INSERT INTO balance_summary")) {
+                        final Object statement = result;
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                new Class<?>[] {PreparedStatement.class}, (p, m, a) -> {
+                                    if (m.getName().equals("executeBatch")) {
+                                        concurrentWrite.run();
+                                    }
+                                    return invoke(statement, m, a);
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void clearSummaries() {
+        database.execute("DELETE FROM balance_summary");
+    }
+
+    private static List<String> allCustomerIds() {
+        List<String> customerIds = new ArrayList<>();
+        for (int c = 1; c <= CUSTOMERS; c++) {
+            customerIds.add(customerId(c));
+        }
+        return customerIds;
+    }
+
+    static String customerId(int index) {
+        return String.format("C%05d", index);
+    }
+}
@@ -0,0 +1,88 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CustomerIdCursorTest {
+
+    private TestDatabase database;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        database = new TestDatabase();
+        conn = database.getConnection();
+
+        // C01..C09 active, C04 with two accounts, C06 with a closed account only
+        for (int c = 1; c <= 9; c++) {
+            addAccount("N" + c, String.format("C%02d", c), c == 6 ? "CLOSED" : "ACTIVE");
+        }
+        addAccount("N4B", "C04", "ACTIVE");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+        database.shutdown();
+    }
+
+    @Test
+    public void pagesCoverEveryActiveCustomerOnceAcrossPageEdges() throws SQLException {
+        List<String> expected = Arrays.asList("C01", "C02", "C03", "C04", "C05", "C07", "C08", "C09");
+
+        for (int pageSize = 1; pageSize <= 9; pageSize++) {
+            CustomerIdCursor cursor = new CustomerIdCursor(conn, null, null, pageSize);
+            List<String> seen = new ArrayList<>();
+            List<String> page;
+            int pages = 0;
+            while (!(page = cursor.nextPage()).isEmpty()) {
+                assertTrue(page.size() <= pageSize);
+                seen.addAll(page);
+                pages++;
+            }
+            assertEquals("page size " + pageSize, expected, seen);
+            // No empty or duplicate pages before the end, whether or not the last page is full
+            assertEquals("page size " + pageSize, expected.size() / pageSize + (expected.size() % pageSize == 0 ? 0 : 1),
+                    pages);
+            assertTrue(cursor.nextPage().isEmpty());
+        }
+    }
+
+    @Test
+    public void boundsAreLowerInclusiveUpperExclusive() throws SQLException {
+        assertEquals(Arrays.asList("C03", "C04", "C05", "C07"), drain(new CustomerIdCursor(conn, "C03", "C08", 2)));
+        assertEquals(Arrays.asList("C01", "C02"), drain(new CustomerIdCursor(conn, null, "C03", 2)));
+        assertEquals(Arrays.asList("C08", "C09"), drain(new CustomerIdCursor(conn, "C08", null, 2)));
+    }
+
+    @Test
+    public void checkpointedPartitionResumesAfterItsLastCustomer() throws SQLException {
+        CustomerPartition partition = new CustomerPartition(0, "C02", "C09", "C04");
+        assertEquals(Arrays.asList("C05", "C07", "C08"), drain(new CustomerIdCursor(conn, partition, 2)));
+    }
+
+    private static List<String> drain(CustomerIdCursor cursor) throws SQLException {
+        List<String> all = new ArrayList<>();
+        List<String> page;
+        while (!(page = cursor.nextPage()).isEmpty()) {
+            all.addAll(page);
+        }
+        return all;
+    }
+
+    private void addAccount(String accountNumber, String customerId, String status) {
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                + "VALUES ('" + accountNumber + "', '" + customerId + "', 'IRA', '" + status + "', CURRENT_DATE)");
+    }
+}
@@ -0,0 +1,129 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.service.MarketDataService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeldSymbolPriceRefresherTest {
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    private TestDatabase database;
+    private HeldSymbolPriceRefresher refresher;
+
+    private final List<List<String>> refreshRequests = new ArrayList<>();
+    private final Set<String> unpriced = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase();
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                + "VALUES ('A1', 'C1', 'IRA', 'ACTIVE', CURRENT_DATE), ('A2', 'C2', 'IRA', 'ACTIVE', CURRENT_DATE)");
+        database.execute("INSERT INTO holdings (account_number, symbol, quantity, purchase_price, purchase_date) VALUES "
+                + "('A1', 'BND', 1, 1, CURRENT_DATE), ('A1', 'VTI', 1, 1, CURRENT_DATE), "
+                + "('A1', 'VXUS', 1, 1, CURRENT_DATE), ('A2', 'VTI', 1, 1, CURRENT_DATE), "
+                + "('A2', 'VOO', 1, 1, CURRENT_DATE), ('A2', 'VNQ', 1, 1, CURRENT_DATE)");
+
+        // Prices every requested symbol except the ones marked unpriced
+        MarketDataService marketDataService = (MarketDataService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MarketDataService.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("refreshQuotes")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    Collection<String> symbols = (Collection<String>) args[0];
+                    refreshRequests.add(new ArrayList<>(symbols));
+                    int priced = 0;
+                    for (String symbol : symbols) {
+                        if (!unpriced.contains(symbol)) {
+                            priced++;
+                        }
+                    }
+                    return priced;
+                });
+
+        refresher = new HeldSymbolPriceRefresher();
+        TestSupport.inject(refresher, "dataSource", database);
+        TestSupport.inject(refresher, "marketDataService", marketDataService);
+        refresher.setChunkSize(2);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void marketIsOpenOnWeekdaysDuringTheSession() {
+        // Friday 2026-10-16 and Saturday 2026-10-17
+        assertFalse(refresher.isMarketOpen(at(2026, 10, 16, 9, 29)));
+        assertTrue(refresher.isMarketOpen(at(2026, 10, 16, 9, 30)));
+        assertTrue(refresher.isMarketOpen(at(2026, 10, 16, 15, 59)));
+        assertFalse(refresher.isMarketOpen(at(2026, 10, 16, 16, 0)));
+        assertFalse(refresher.isMarketOpen(at(2026, 10, 17, 12, 0)));
+
+        refresher.setMarketOpen("08:00");
+        refresher.setMarketClose("17:30");
+        assertTrue(refresher.isMarketOpen(at(2026, 10, 16, 8, 0)));
+        assertTrue(refresher.isMarketOpen(at(2026, 10, 16, 17, 29)));
+        assertFalse(refresher.isMarketOpen(at(2026, 10, 16, 17, 30)));
+    }
+
+    @Test
+    public void cycleCoversTheDistinctUniverseInChunks() {
+        unpriced.add("VNQ");
+
+        assertEquals(4, refresher.refreshAllHeldSymbols());
+
+        assertEquals(Arrays.asList(Arrays.asList("BND", "VNQ"), Arrays.asList("VOO", "VTI"),
+                Arrays.asList("VXUS")), refreshRequests);
+        assertEquals(5, refresher.getUniverseSize());
+        assertEquals(0.8, refresher.getLastCoverage(), 1e-9);
+        assertEquals(1, refresher.getCycleCount());
+        assertTrue(refresher.getLastCycleCompletedAt() > 0);
+
+        // A later cycle with every quote back reports full coverage
+        unpriced.clear();
+        assertEquals(5, refresher.refreshAllHeldSymbols());
+        assertEquals(1.0, refresher.getLastCoverage(), 1e-9);
+        assertEquals(2, refresher.getCycleCount());
+    }
+
+    @Test
+    public void universeIsReloadedOnlyAfterTheReloadInterval() {
+        refresher.refreshAllHeldSymbols();
+        database.execute("INSERT INTO holdings (account_number, symbol, quantity, purchase_price, purchase_date) "
+                + "VALUES ('A2', 'BNDX', 1, 1, CURRENT_DATE)");
+
+        database.resetStatementCount();
+        refresher.refreshAllHeldSymbols();
+        assertEquals(0, database.getStatementCount());
+        assertEquals(5, refresher.getUniverseSize());
+
+        refresher.setUniverseReloadMillis(0L);
+        refresher.refreshAllHeldSymbols();
+        assertEquals(1, database.getStatementCount());
+        assertEquals(6, refresher.getUniverseSize());
+    }
+
+    private static ZonedDateTime at(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, NEW_YORK);
+    }
+}
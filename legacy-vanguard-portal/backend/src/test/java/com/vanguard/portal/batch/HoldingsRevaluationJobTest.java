@@ -0,0 +1,163 @@
+package com.vanguard.portal.batch;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.dao.HoldingsDAO;
+import com.vanguard.portal.service.MarketDataService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HoldingsRevaluationJobTest {
+
+    private TestDatabase database;
+    private HoldingsRevaluationJob job;
+
+    private final Map<String, BigDecimal> prices = new HashMap<>();
+    private final List<Integer> quoteRequestSizes = new ArrayList<>();
+    private final TreeSet<String> evicted = new TreeSet<>();
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase();
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                + "VALUES ('A1', 'C1', 'IRA', 'ACTIVE', CURRENT_DATE), ('A2', 'C2', 'IRA', 'ACTIVE', CURRENT_DATE)");
+
+        MarketDataService marketDataService = (MarketDataService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MarketDataService.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("getStockQuotes")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    String[] symbols = (String[]) args[0];
+                    quoteRequestSizes.add(symbols.length);
+                    Map<String, BigDecimal> quotes = new HashMap<>();
+                    for (String symbol : symbols) {
+                        if (prices.containsKey(symbol)) {
+                            quotes.put(symbol, prices.get(symbol));
+                        }
+                    }
+                    return quotes;
+                });
+
+        HoldingsDAO holdingsDAO = (HoldingsDAO) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {HoldingsDAO.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("evictCachedHoldings")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    Collection<String> symbols = (Collection<String>) args[0];
+                    evicted.addAll(symbols);
+                    return null;
+                });
+
+        job = new HoldingsRevaluationJob();
+        TestSupport.inject(job, "dataSource", database);
+        TestSupport.inject(job, "marketDataService", marketDataService);
+        TestSupport.inject(job, "holdingsDAO", holdingsDAO);
+        job.setWorkerCount(2);
+        job.setPartitionCount(4);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void revaluesNullPricesAndStaleMarketValuesOnly() throws SQLException {
+        // No price yet
+        insertHolding("A1", "VTI", "10", null, null);
+        // Already at the tick price and value
+        insertHolding("A2", "BND", "5", "50.00", "250.00");
+        // Price unchanged but quantity changed since the value was computed
+        insertHolding("A1", "VXUS", "20", "60.00", "1000.00");
+        insertHolding("A2", "VTI", "3", "100.00", "300.00");
+
+        prices.put("VTI", new BigDecimal("100.00"));
+        prices.put("BND", new BigDecimal("50.00"));
+        prices.put("VXUS", new BigDecimal("60.00"));
+
+        assertEquals(2, job.revalueAllHoldings());
+        assertEquals(new BigDecimal("1000.00"), marketValue("A1", "VTI"));
+        assertEquals(new BigDecimal("100.00"), currentPrice("A1", "VTI"));
+        assertEquals(new BigDecimal("1200.00"), marketValue("A1", "VXUS"));
+
+        // Only symbols whose update touched a row are evicted from the holdings cache
+        assertEquals(new TreeSet<>(Arrays.asList("VTI", "VXUS")), evicted);
+
+        evicted.clear();
+        assertEquals(0, job.revalueAllHoldings());
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void priceWithMoreDecimalsIsRoundedHalfUpAndNotRewrittenNextTick() throws SQLException {
+        insertHolding("A1", "VXUS", "20", "60.00", "1200.00");
+        prices.put("VXUS", new BigDecimal("60.125"));
+
+        assertEquals(1, job.revalueAllHoldings());
+        assertEquals(new BigDecimal("60.13"), currentPrice("A1", "VXUS"));
+        assertEquals(new BigDecimal("1202.50"), marketValue("A1", "VXUS"));
+
+        assertEquals(0, job.revalueAllHoldings());
+    }
+
+    @Test
+    public void quotesAreFetchedInChunks() throws SQLException {
+        for (int i = 0; i < 450; i++) {
+            insertHolding(i % 2 == 0 ? "A1" : "A2", String.format("S%03d", i), "1", "1.00", "1.00");
+        }
+
+        job.setQuoteChunkSize(200);
+        job.revalueAllHoldings();
+
+        assertEquals(Arrays.asList(200, 200, 50), quoteRequestSizes);
+        // None of these symbols is quoted, so nothing is rewritten
+        assertEquals(new BigDecimal("1.00"), marketValue("A1", "S000"));
+        assertTrue(evicted.isEmpty());
+    }
+
+    private void insertHolding(String account, String symbol, String quantity, String price, String marketValue) {
+        database.execute("INSERT INTO holdings (account_number, symbol, quantity, purchase_price, current_price, "
+                + "market_value, gain_loss_pct, purchase_date) VALUES ('" + account + "', '" + symbol + "', "
+                + quantity + ", 50.00, " + price + ", " + marketValue + ", 0, CURRENT_DATE)");
+    }
+
+    private BigDecimal currentPrice(String account, String symbol) throws SQLException {
+        return column("current_price", account, symbol);
+    }
+
+    private BigDecimal marketValue(String account, String symbol) throws SQLException {
+        return column("market_value", account, symbol);
+    }
+
+    private BigDecimal column(String column, String account, String symbol) throws SQLException {
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT " + column + " FROM holdings WHERE account_number = ? AND symbol = ?")) {
+            stmt.setString(1, account);
+            stmt.setString(2, symbol);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.vanguard.portal.dao;
+
+import com.vanguard.portal.model.HoldingsSnapshot;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HoldingsCacheTest {
+
+    private final HoldingsCache cache = new HoldingsCache(60000L, 10);
+
+    @Test
+    public void entriesExpireAfterTheTtl() {
+        HoldingsSnapshot snapshot = snapshot("A1", "VTI");
+        cache.put("C1", snapshot, cache.version());
+
+        assertSame(snapshot, cache.get("C1"));
+        assertEquals(1, cache.getHitCount());
+
+        cache.setTtlMillis(-1L);
+        assertNull(cache.get("C1"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getFootprintBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedCustomerIsEvicted() {
+        cache.setMaxSize(2);
+        cache.put("C1", snapshot("A1", "VTI"), cache.version());
+        cache.put("C2", snapshot("A2", "BND"), cache.version());
+        cache.get("C1");
+
+        cache.put("C3", snapshot("A3", "VXUS"), cache.version());
+
+        assertNull(cache.get("C2"));
+        assertNotNull(cache.get("C1"));
+        assertNotNull(cache.get("C3"));
+        assertEquals(1, cache.getEvictionCount());
+        // The evicted customer is gone from both indexes
+        assertFalse(cache.invalidateAccount("A2"));
+        cache.invalidateSymbols(Collections.singleton("BND"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void accountInvalidationEvictsOnlyItsCustomer() {
+        cache.put("C1", snapshot("A1", "VTI", "A2", "BND"), cache.version());
+        cache.put("C2", snapshot("A3", "VTI"), cache.version());
+
+        assertTrue(cache.invalidateAccount("A2"));
+        assertFalse(cache.invalidateAccount("A9"));
+
+        assertNull(cache.get("C1"));
+        assertNotNull(cache.get("C2"));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void symbolInvalidationEvictsEveryHolderAndNobodyElse() {
+        cache.put("C1", snapshot("A1", "VTI", "A1", "BND"), cache.version());
+        cache.put("C2", snapshot("A2", "BND"), cache.version());
+        cache.put("C3", snapshot("A3", "VXUS"), cache.version());
+
+        cache.invalidateSymbols(Arrays.asList("BND", "NOPE"));
+
+        assertNull(cache.get("C1"));
+        assertNull(cache.get("C2"));
+        assertNotNull(cache.get("C3"));
+        assertEquals(2, cache.getInvalidationCount());
+
+        // C1's other symbol and account were unindexed with it
+        cache.invalidateSymbols(Collections.singleton("VTI"));
+        assertFalse(cache.invalidateAccount("A1"));
+        assertEquals(2, cache.getInvalidationCount());
+        assertEquals(snapshot("A3", "VXUS").estimateMemoryBytes(), cache.getFootprintBytes());
+    }
+
+    @Test
+    public void loadThatRacedAnInvalidationIsNotCached() {
+        long symbolLoad = cache.version();
+        cache.invalidateSymbols(Collections.singleton("VTI"));
+        cache.put("C1", snapshot("A1", "VTI"), symbolLoad);
+        assertNull(cache.get("C1"));
+
+        // Any write bumps the version, even one for an account the cache has never seen
+        long accountLoad = cache.version();
+        cache.invalidateAccount("A9");
+        cache.put("C1", snapshot("A1", "VTI"), accountLoad);
+        assertNull(cache.get("C1"));
+
+        cache.put("C1", snapshot("A1", "VTI"), cache.version());
+        assertNotNull(cache.get("C1"));
+    }
+
+    /** One row per account/symbol pair. */
+    private static HoldingsSnapshot snapshot(String... accountSymbolPairs) {
+        HoldingsSnapshot.Builder builder = new HoldingsSnapshot.Builder();
+        for (int i = 0; i < accountSymbolPairs.length; i += 2) {
+            builder.add(i, accountSymbolPairs[i], accountSymbolPairs[i + 1], 10000L, 10000L, 11000L,
+                    11000L, 100000L, 0L, 0L, 0);
+        }
+        return builder.build();
+    }
+}
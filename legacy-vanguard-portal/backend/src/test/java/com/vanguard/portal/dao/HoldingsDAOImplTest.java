@@ -0,0 +1,83 @@
+package com.vanguard.portal.dao;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.model.Holding;
+import com.vanguard.portal.model.HoldingsSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class HoldingsDAOImplTest {
+
+    private TestDatabase database;
+    private HoldingsDAOImpl holdingsDAO;
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase();
+        holdingsDAO = new HoldingsDAOImpl();
+        TestSupport.inject(holdingsDAO, "dataSource", database);
+
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, status, open_date) "
+                + "VALUES ('A1', 'C1', 'IRA', 'ACTIVE', CURRENT_DATE), ('A2', 'C1', 'ROTH', 'ACTIVE', CURRENT_DATE)");
+        database.execute("INSERT INTO holdings (account_number, symbol, quantity, purchase_price, current_price, "
+                + "market_value, gain_loss_pct, purchase_date) VALUES "
+                + "('A1', 'VTI', 12.3456, 150.25, 210.10, 2593.80, 39.8336, '2018-01-10'), "
+                + "('A1', 'BND', 40.0000, 80.00, -1.25, -50.00, -101.5625, '2019-12-31'), "
+                + "('A2', 'NEW', 5.0000, 20.00, NULL, NULL, NULL, '2020-02-29')");
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void snapshotRowsMatchRowByRowMapping() {
+        Map<Long, Holding> expected = new HashMap<>();
+        for (String account : new String[] {"A1", "A2"}) {
+            for (Holding holding : holdingsDAO.findByAccountNumber(account)) {
+                expected.put(holding.getHoldingId(), holding);
+            }
+        }
+
+        List<Holding> holdings = holdingsDAO.findSnapshotByCustomerId("C1").toHoldings();
+        assertEquals(3, holdings.size());
+        for (Holding holding : holdings) {
+            Holding row = expected.get(holding.getHoldingId());
+            assertEquals(row.getSymbol(), row.getAccountNumber(), holding.getAccountNumber());
+            assertEquals(row.getSymbol(), row.getQuantity(), holding.getQuantity());
+            assertEquals(row.getSymbol(), row.getPurchasePrice(), holding.getPurchasePrice());
+            assertEquals(row.getSymbol(), row.getCurrentPrice(), holding.getCurrentPrice());
+            assertEquals(row.getSymbol(), row.getMarketValue(), holding.getMarketValue());
+            assertEquals(row.getSymbol(), row.getGainLossPct(), holding.getGainLossPct());
+            assertEquals(row.getSymbol(), row.getPurchaseDate().toString(), holding.getPurchaseDate().toString());
+            // Millisecond precision; MySQL TIMESTAMP columns carry whole seconds
+            assertEquals(row.getSymbol(), row.getLastUpdated().getTime(), holding.getLastUpdated().getTime());
+        }
+    }
+
+    @Test
+    public void nullPricesStayNullAndCountAsZeroInTotals() {
+        HoldingsSnapshot snapshot = holdingsDAO.findSnapshotByCustomerId("C1");
+
+        Holding fresh = snapshot.toHoldings(snapshot.filterBySymbol("NEW")).get(0);
+        assertNull(fresh.getCurrentPrice());
+        assertNull(fresh.getMarketValue());
+        assertNull(fresh.getGainLossPct());
+        assertNotNull(fresh.getQuantity());
+        assertEquals("2020-02-29", fresh.getPurchaseDate().toString());
+
+        assertEquals(new BigDecimal("2543.80"), BigDecimal.valueOf(snapshot.totalMarketValue(), 2));
+    }
+}
@@ -0,0 +1,198 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.batch.BalanceSummaryAggregator;
+import com.vanguard.portal.dao.AccountDAOImpl;
+import com.vanguard.portal.dao.BalanceDAOImpl;
+import com.vanguard.portal.model.Account;
+import com.vanguard.portal.model.Balance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BalanceServiceImplTest {
+
+    private TestDatabase database;
+    private AccountDAOImpl accountDAO;
+    private BalanceDAOImpl balanceDAO;
+    private BalanceServiceImpl balanceService;
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase();
+
+        accountDAO = new AccountDAOImpl();
+        TestSupport.inject(accountDAO, "dataSource", database);
+        balanceDAO = new BalanceDAOImpl();
+        TestSupport.inject(balanceDAO, "dataSource", database);
+        balanceService = new BalanceServiceImpl();
+        TestSupport.inject(balanceService, "balanceDAO", balanceDAO);
+
+        // C1: balances, recent pending, old pending, posted, a closed account and one with no balance row
+        addAccount("A100", "C1", "BROKERAGE", "ACTIVE");
+        addAccount("A101", "C1", "IRA", "ACTIVE");
+        addAccount("A102", "C1", "ROTH_IRA", "CLOSED");
+        addAccount("A103", "C1", "529", "ACTIVE");
+        addBalance("A100", "1500.25");
+        addBalance("A101", "20000.00");
+        addBalance("A102", "999.99");
+        addTransaction("A100", "-100.50", "PENDING", 2);
+        addTransaction("A100", "25.00", "PENDING", 10);
+        addTransaction("A100", "300.00", "POSTED", 1);
+        addTransaction("A101", "-5000.00", "PENDING", 45);
+        addTransaction("A102", "50.00", "PENDING", 1);
+        addTransaction("A103", "75.10", "PENDING", 3);
+
+        // C2 must not leak into C1's summary
+        addAccount("A200", "C2", "BROKERAGE", "ACTIVE");
+        addBalance("A200", "42.00");
+        addTransaction("A200", "8.00", "PENDING", 1);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void accountSummaryIsOneStatementWhateverTheAccountCount() {
+        addAccount("A300", "C3", "IRA", "ACTIVE");
+        addBalance("A300", "10.00");
+        for (int i = 0; i < 50; i++) {
+            String accountNumber = String.format("A4%02d", i);
+            addAccount(accountNumber, "C4", "BROKERAGE", "ACTIVE");
+            addBalance(accountNumber, "100.00");
+            addTransaction(accountNumber, "1.00", "PENDING", 1);
+        }
+
+        database.resetStatementCount();
+        Map<String, Object> one = balanceService.getCustomerAccountSummary("C3");
+        assertEquals(1, database.getStatementCount());
+        assertEquals(1, one.get("accountCount"));
+
+        database.resetStatementCount();
+        Map<String, Object> fifty = balanceService.getCustomerAccountSummary("C4");
+        assertEquals(1, database.getStatementCount());
+        assertEquals(50, fifty.get("accountCount"));
+        assertAmount(new BigDecimal("5050.00"), fifty.get("totalBalance"));
+    }
+
+    @Test
+    public void accountSummaryMatchesPerAccountPath() {
+        for (String customerId : new String[] {"C1", "C2", "NOBODY"}) {
+            Map<String, Object> expected = perAccountSummary(customerId);
+
+            database.resetStatementCount();
+            Map<String, Object> actual = balanceService.getCustomerAccountSummary(customerId);
+
+            assertEquals(expected.get("accountCount"), actual.get("accountCount"));
+            assertAmount(expected.get("totalBalance"), actual.get("totalBalance"));
+
+            List<?> expectedAccounts = (List<?>) expected.get("accounts");
+            List<?> actualAccounts = (List<?>) actual.get("accounts");
+            assertEquals(expectedAccounts.size(), actualAccounts.size());
+            for (int i = 0; i < expectedAccounts.size(); i++) {
+                Map<?, ?> e = (Map<?, ?>) expectedAccounts.get(i);
+                Map<?, ?> a = (Map<?, ?>) actualAccounts.get(i);
+                assertEquals(e.get("accountNumber"), a.get("accountNumber"));
+                assertEquals(e.get("accountType"), a.get("accountType"));
+                assertEquals(e.get("accountName"), a.get("accountName"));
+                assertAmount(e.get("balance"), a.get("balance"));
+            }
+            assertTrue(database.getStatementCount() <= 1);
+        }
+    }
+
+    @Test
+    public void accountSummaryFoldsInRecentPendingOnly() {
+        Map<String, Object> summary = balanceService.getCustomerAccountSummary("C1");
+
+        // 1500.25 - 100.50 + 25.00, 20000.00 (pending is too old), 0 + 75.10
+        assertAmount(new BigDecimal("21499.85"), summary.get("totalBalance"));
+        assertEquals(3, summary.get("accountCount"));
+    }
+
+    @Test
+    public void summaryTotalsFollowWriteThroughAndMatchLiveSummary() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            new BalanceSummaryAggregator().aggregateRange(conn, "C1", "C2");
+        }
+
+        balanceService.updateAccountBalance("A100", new BigDecimal("400.00"), "CREDIT");
+        balanceService.updateAccountBalance("A101", new BigDecimal("1000.50"), "DEBIT");
+
+        Map<String, Object> totals = balanceService.getCustomerBalanceTotals("C1");
+        Map<String, Object> live = balanceService.getCustomerAccountSummary("C1");
+
+        assertEquals("SUMMARY", totals.get("source"));
+        assertAmount(live.get("totalBalance"), totals.get("totalBalance"));
+        assertEquals(live.get("accountCount"), totals.get("accountCount"));
+    }
+
+    /**
+     * The account summary as it was computed before the set-based query: the
+     * active accounts, then a balance lookup and a 30-day transaction scan per account.
+     */
+    private Map<String, Object> perAccountSummary(String customerId) {
+        List<Account> accounts = accountDAO.findByCustomerId(customerId);
+
+        BigDecimal totalBalance = BigDecimal.ZERO;
+        List<Map<String, Object>> accountDetails = new ArrayList<>();
+        for (Account account : accounts) {
+            Balance balance = balanceDAO.findByAccountNumber(account.getAccountNumber());
+            BigDecimal accountBalance = balance != null ? balance.getCurrentBalance() : BigDecimal.ZERO;
+            for (Map<String, Object> transaction : balanceDAO.getRecentTransactions(account.getAccountNumber(), 30)) {
+                if ("PENDING".equals(transaction.get("status"))) {
+                    accountBalance = accountBalance.add((BigDecimal) transaction.get("amount"));
+                }
+            }
+
+            Map<String, Object> accountInfo = new HashMap<>();
+            accountInfo.put("accountNumber", account.getAccountNumber());
+            accountInfo.put("accountType", account.getAccountType());
+            accountInfo.put("accountName", account.getAccountName());
+            accountInfo.put("balance", accountBalance);
+            accountDetails.add(accountInfo);
+            totalBalance = totalBalance.add(accountBalance);
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("accounts", accountDetails);
+        summary.put("totalBalance", totalBalance);
+        summary.put("accountCount", accounts.size());
+        return summary;
+    }
+
+    private void addAccount(String accountNumber, String customerId, String type, String status) {
+        database.execute("INSERT INTO accounts (account_number, customer_id, account_type, account_name, status, open_date) "
+                + "VALUES ('" + accountNumber + "', '" + customerId + "', '" + type + "', '" + type + " account', '"
+                + status + "', CURRENT_DATE)");
+    }
+
+    private void addBalance(String accountNumber, String amount) {
+        database.execute("INSERT INTO balances (account_number, current_balance, available_balance) "
+                + "VALUES ('" + accountNumber + "', " + amount + ", " + amount + ")");
+    }
+
+    private void addTransaction(String accountNumber, String amount, String status, int daysAgo) {
+        database.execute("INSERT INTO transactions (account_number, transaction_type, amount, status, transaction_date) "
+                + "VALUES ('" + accountNumber + "', 'TRANSFER', " + amount + ", '" + status + "', "
+                + "DATEADD(DAY, -" + daysAgo + ", CURRENT_DATE))");
+    }
+
+    private static void assertAmount(Object expected, Object actual) {
+        assertEquals(expected + " vs " + actual, 0, ((BigDecimal) expected).compareTo((BigDecimal) actual));
+    }
+}
@@ -0,0 +1,140 @@
+package com.vanguard.portal.service;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CorrelatedNormalScenariosTest {
+
+    @Test
+    public void drawsHaveTheTargetCorrelationAndVolatility() {
+        double[][] target = {
+                {1.0, 0.8, -0.3},
+                {0.8, 1.0, 0.1},
+                {-0.3, 0.1, 1.0}};
+        double[] annualVolatility = {0.15, 0.25, 0.05};
+        CorrelatedNormalScenarios scenarios = new CorrelatedNormalScenarios(target, annualVolatility);
+        assertEquals(0.0, scenarios.getJitter(), 0.0);
+
+        int draws = 200000;
+        double[][] samples = new double[3][draws];
+        double[] returns = new double[3];
+        SplittableRandom rng = new SplittableRandom(5);
+        for (int d = 0; d < draws; d++) {
+            scenarios.nextScenario(rng, returns);
+            for (int i = 0; i < 3; i++) {
+                samples[i][d] = returns[i];
+            }
+        }
+
+        for (int i = 0; i < 3; i++) {
+            double dailyVolatility = annualVolatility[i] / Math.sqrt(252.0);
+            assertEquals(dailyVolatility, CorrelationEngine.standardDeviation(samples[i]), dailyVolatility * 0.01);
+            for (int j = 0; j < i; j++) {
+                assertEquals(target[i][j], correlation(samples[i], samples[j]), 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void distinctSymbolMatrixFactorsWithoutJitter() {
+        double[][] symbols = oneFactorMatrix(50, 0.36);
+        assertEquals(0.0, new CorrelatedNormalScenarios(symbols, volatilities(50)).getJitter(), 0.0);
+
+        // The same 50 symbols expanded to 4 lots each repeat rows and are singular
+        double[][] lots = expand(symbols, 4);
+        assertTrue(new CorrelatedNormalScenarios(lots, volatilities(200)).getJitter() > 0.0);
+    }
+
+    /**
+     * 50 symbols held in 4 lots each, simulated once on the distinct-symbol
+     * matrix with lot values summed and once on the matrix expanded to lots.
+     * The cost per scenario of each is measured by ScenarioGeneratorBenchmark.
+     */
+    @Test
+    public void aggregatingLotsPerSymbolGivesTheSameVar() {
+        int symbolCount = 50;
+        int lotsPerSymbol = 4;
+        int scenarios = 20000;
+        MonteCarloVarEngine engine = new MonteCarloVarEngine(1);
+        try {
+            double[][] symbolMatrix = oneFactorMatrix(symbolCount, 0.36);
+            double[] symbolVolatility = volatilities(symbolCount);
+            double[] symbolValues = new double[symbolCount];
+            double[] lotValues = new double[symbolCount * lotsPerSymbol];
+            double[] lotVolatility = new double[lotValues.length];
+            for (int p = 0; p < lotValues.length; p++) {
+                lotValues[p] = 1000.0 + 250.0 * (p % lotsPerSymbol);
+                lotVolatility[p] = symbolVolatility[p / lotsPerSymbol];
+                symbolValues[p / lotsPerSymbol] += lotValues[p];
+            }
+
+            double bySymbol = simulate(engine, symbolMatrix, symbolVolatility, symbolValues, scenarios);
+            double byLot = simulate(engine, expand(symbolMatrix, lotsPerSymbol), lotVolatility, lotValues, scenarios);
+
+            // Different random streams, so the estimates agree only to sampling error
+            assertTrue("VaR not computed", bySymbol > 0.0);
+            assertEquals(byLot, bySymbol, byLot * 0.05);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static double simulate(MonteCarloVarEngine engine, double[][] correlation, double[] volatility,
+                                   double[] values, int scenarios) {
+        CorrelatedNormalScenarios generator = new CorrelatedNormalScenarios(correlation, volatility);
+        return MonteCarloVarEngine.valueAtRisk(engine.simulate(values, generator, scenarios, 17L), 0.99);
+    }
+
+    static double[][] oneFactorMatrix(int n, double rho) {
+        double[][] matrix = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                matrix[i][j] = i == j ? 1.0 : rho;
+            }
+        }
+        return matrix;
+    }
+
+    static double[][] expand(double[][] symbols, int lotsPerSymbol) {
+        int n = symbols.length * lotsPerSymbol;
+        double[][] lots = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                lots[i][j] = symbols[i / lotsPerSymbol][j / lotsPerSymbol];
+            }
+        }
+        return lots;
+    }
+
+    static double[] volatilities(int n) {
+        double[] volatility = new double[n];
+        for (int i = 0; i < n; i++) {
+            volatility[i] = 0.10 + 0.30 * i / n;
+        }
+        return volatility;
+    }
+
+    private static double correlation(double[] x, double[] y) {
+        double meanX = 0.0;
+        double meanY = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= y.length;
+        double sxy = 0.0;
+        double sxx = 0.0;
+        double syy = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+            syy += (y[i] - meanY) * (y[i] - meanY);
+        }
+        return sxy / Math.sqrt(sxx * syy);
+    }
+}
@@ -0,0 +1,141 @@
+package com.vanguard.portal.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CorrelationEngineTest {
+
+    private static final double NaN = Double.NaN;
+
+    private CorrelationEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new CorrelationEngine(2);
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void correlateMatchesHandComputedPearson() {
+        // Means 2.5 and 5; Sxy = 11, Sxx = 5, Syy = 26
+        double[] x = {1, 2, 3, 4};
+        double[] y = {2, 4, 5, 9};
+        assertEquals(11.0 / Math.sqrt(130.0), CorrelationEngine.correlate(x, y), 1e-12);
+        assertEquals(CorrelationEngine.correlate(x, y), CorrelationEngine.correlate(y, x), 0.0);
+        assertEquals(-11.0 / Math.sqrt(130.0), CorrelationEngine.correlate(x, new double[] {-2, -4, -5, -9}), 1e-12);
+    }
+
+    @Test
+    public void correlateSkipsDaysWhereEitherSeriesIsUnknown() {
+        // The same four pairs as above, with gaps in one series or the other
+        double[] x = {1, NaN, 2, 8, 3, NaN, 4};
+        double[] y = {2, 7, 4, NaN, 5, NaN, 9};
+        assertEquals(11.0 / Math.sqrt(130.0), CorrelationEngine.correlate(x, y), 1e-12);
+    }
+
+    @Test
+    public void correlateIsZeroWithoutEnoughOverlapOrVariance() {
+        assertEquals(0.0, CorrelationEngine.correlate(new double[] {1, NaN, 3}, new double[] {NaN, 2, 3}), 0.0);
+        assertEquals(0.0, CorrelationEngine.correlate(new double[] {1, 2, 3}, new double[] {4, 4, 4}), 0.0);
+        assertEquals(0.0, CorrelationEngine.correlate(new double[0], new double[0]), 0.0);
+    }
+
+    @Test
+    public void returnSeriesAlignOnTheUnionOfDates() {
+        Map<Date, BigDecimal> a = prices(0, "100", 1, "110", 2, "99", 3, "99");
+        Map<Date, BigDecimal> b = prices(0, "50", 2, "55", 3, "66", 4, "33");
+        // A non-positive close counts as missing
+        Map<Date, BigDecimal> c = prices(0, "10", 1, "-5", 2, "12", 3, "15", 4, "12");
+        List<Map<Date, BigDecimal>> series = Arrays.asList(a, b, c, null);
+
+        assertArrayEquals(new Date[] {day(0), day(1), day(2), day(3), day(4)}, CorrelationEngine.dateAxis(series));
+
+        double[][] returns = CorrelationEngine.toReturnSeries(series);
+        assertEquals(4, returns.length);
+        assertArrayEquals(new double[] {0.1, -0.1, 0.0, NaN}, returns[0], 1e-12);
+        // B has no close on day 1, so neither day 1 nor day 2 has a return; day 0 to 2 is not bridged
+        assertArrayEquals(new double[] {NaN, NaN, 0.2, -0.5}, returns[1], 1e-12);
+        assertArrayEquals(new double[] {NaN, NaN, 0.25, -0.2}, returns[2], 1e-12);
+        assertArrayEquals(new double[] {NaN, NaN, NaN, NaN}, returns[3], 0.0);
+
+        // Only days 2 and 3 have returns in both B and C
+        assertEquals(1.0, CorrelationEngine.correlate(returns[1], returns[2]), 1e-12);
+        assertEquals(0.0, CorrelationEngine.correlate(returns[0], returns[1]), 0.0);
+    }
+
+    @Test
+    public void returnSeriesOnAGivenAxisIgnoreClosesOffIt() {
+        Map<Date, BigDecimal> prices = prices(0, "100", 1, "120", 2, "90", 5, "45");
+        double[][] returns = CorrelationEngine.toReturnSeries(Collections.singletonList(prices),
+                new Date[] {day(0), day(2), day(3)});
+
+        assertArrayEquals(new double[] {-0.1, NaN}, returns[0], 1e-12);
+        assertEquals(0, CorrelationEngine.toReturnSeries(Collections.singletonList(prices), new Date[0])[0].length);
+    }
+
+    @Test
+    public void matrixAndCrossCorrelationAgreeWithPairwiseCorrelate() {
+        double[][] returns = {
+                {0.01, -0.02, NaN, 0.015, 0.003, -0.007},
+                {0.012, -0.01, 0.004, NaN, 0.001, -0.009},
+                {-0.005, 0.02, -0.01, -0.012, NaN, 0.006},
+                {0.0, 0.001, 0.002, 0.003, 0.004, NaN}};
+
+        double[][] matrix = engine.correlationMatrix(returns);
+        for (int i = 0; i < returns.length; i++) {
+            assertEquals(1.0, matrix[i][i], 0.0);
+            for (int j = 0; j < returns.length; j++) {
+                if (i != j) {
+                    assertEquals(CorrelationEngine.correlate(returns[i], returns[j]), matrix[i][j], 0.0);
+                    assertEquals(matrix[j][i], matrix[i][j], 0.0);
+                }
+            }
+        }
+        assertTrue(matrix[0][2] < 0.0);
+
+        double[][] cross = engine.crossCorrelation(new double[][] {returns[3]}, Arrays.copyOf(returns, 3));
+        assertArrayEquals(new double[] {matrix[3][0], matrix[3][1], matrix[3][2]}, cross[0], 0.0);
+    }
+
+    @Test
+    public void standardDeviationUsesOnlyKnownValues() {
+        // Sample variance of {2, 4, 4, 4, 5, 5, 7, 9} is 32 / 7
+        double[] series = {2, NaN, 4, 4, 4, 5, NaN, 5, 7, 9};
+        assertEquals(Math.sqrt(32.0 / 7.0), CorrelationEngine.standardDeviation(series), 1e-12);
+        assertEquals(0.0, CorrelationEngine.standardDeviation(new double[] {NaN, 3}), 0.0);
+    }
+
+    /** Closing prices from alternating day offsets and amounts. */
+    private static Map<Date, BigDecimal> prices(Object... dayAndPrice) {
+        Map<Date, BigDecimal> prices = new TreeMap<>();
+        for (int i = 0; i < dayAndPrice.length; i += 2) {
+            prices.put(day((Integer) dayAndPrice[i]), new BigDecimal((String) dayAndPrice[i + 1]));
+        }
+        return prices;
+    }
+
+    private static Date day(int offset) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2024, Calendar.JANUARY, 2 + offset);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,155 @@
+package com.vanguard.portal.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CorrelationMatrixStoreTest {
+
+    private SyntheticMarketData marketData;
+    private CorrelationEngine engine;
+    private CorrelationMatrixStore store;
+    private ExecutorService callers;
+
+    @Before
+    public void setUp() {
+        marketData = new SyntheticMarketData();
+        engine = new CorrelationEngine(2);
+        store = new CorrelationMatrixStore(marketData.dao(), engine, 365, 100);
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        engine.shutdown();
+    }
+
+    @Test
+    public void refreshOfAnEmptyStoreLoadsNothing() {
+        store.refresh(day(2024, Calendar.JUNE, 28));
+
+        assertEquals(0, marketData.getPriceLoadCount());
+        assertEquals(0, store.getRefreshCount());
+    }
+
+    @Test
+    public void cachedSymbolsAreServedWhileAnotherThreadLoads() throws Exception {
+        Date asOf = day(2024, Calendar.JUNE, 28);
+        store.correlationMatrix(Arrays.asList("VTI", "BND"), asOf);
+
+        marketData.setLoadDelayMillis(1000);
+        Future<double[][]> loading = callers.submit(() -> store.correlationMatrix(Arrays.asList("VTI", "VXUS"), asOf));
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        double[][] cached = store.correlationMatrix(Arrays.asList("BND", "VTI"), asOf);
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("cached lookup waited " + waited + "ms behind a load", waited < 500);
+        assertEquals(1.0, cached[0][0], 1e-12);
+        assertFalse(loading.isDone());
+
+        double[][] added = loading.get(5, TimeUnit.SECONDS);
+        assertEquals(2, marketData.getPriceLoadCount());
+        assertEquals(3, store.size());
+        assertEquals(fresh(Arrays.asList("VTI", "VXUS"), asOf)[0][1], added[0][1], 1e-12);
+    }
+
+    @Test
+    public void currentGenerationIsServedWhileANewCloseIsLoaded() throws Exception {
+        Date friday = day(2024, Calendar.JUNE, 28);
+        Date monday = day(2024, Calendar.JULY, 1);
+        store.correlationMatrix(Arrays.asList("VTI", "BND"), friday);
+
+        marketData.setLoadDelayMillis(1000);
+        Future<?> rebuild = callers.submit(() -> store.refresh(monday));
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        store.correlationMatrix(Arrays.asList("VTI", "BND"), monday);
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("request waited " + waited + "ms behind the rebuild", waited < 500);
+        assertEquals(friday, store.getAsOf());
+
+        rebuild.get(5, TimeUnit.SECONDS);
+        assertEquals(monday, store.getAsOf());
+        assertEquals(2, store.getVersion());
+        assertEquals(2, marketData.getPriceLoadCount());
+    }
+
+    @Test
+    public void concurrentAdditionsMatchAFreshComputation() throws Exception {
+        Date asOf = day(2024, Calendar.JUNE, 28);
+        store.correlationMatrix(Arrays.asList("VTI", "BND"), asOf);
+        marketData.setLoadDelayMillis(20);
+
+        List<Future<double[][]>> results = new ArrayList<>();
+        List<String> all = new ArrayList<>(Arrays.asList("VTI", "BND"));
+        for (int t = 0; t < 16; t++) {
+            final List<String> symbols = Arrays.asList("VTI", "S" + t, "S" + (t + 1) % 16);
+            all.add("S" + t);
+            results.add(callers.submit(() -> store.correlationMatrix(symbols, asOf)));
+        }
+        for (Future<double[][]> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+
+        // Every pair added by racing threads is filled in and agrees with a single bulk computation
+        double[][] cached = store.correlationMatrix(all, asOf);
+        double[][] expected = fresh(all, asOf);
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = 0; j < all.size(); j++) {
+                assertEquals(all.get(i) + "/" + all.get(j), expected[i][j], cached[i][j], 1e-12);
+            }
+        }
+        assertEquals(1, store.getVersion());
+    }
+
+    @Test
+    public void symbolsAddedLaterKeepTheirFullHistory() {
+        Date asOf = day(2024, Calendar.JUNE, 28);
+        marketData.setListed("IPO", day(2024, Calendar.JUNE, 3));
+
+        // The generation starts from 4 weeks of dates; VTI and BND have a year
+        store.correlationMatrix(Collections.singletonList("IPO"), asOf);
+        double[][] cached = store.correlationMatrix(Arrays.asList("VTI", "BND", "IPO"), asOf);
+
+        assertEquals(fresh(Arrays.asList("VTI", "BND"), asOf)[0][1], cached[0][1], 1e-12);
+        assertEquals(3, store.size());
+        assertEquals(2, store.getVersion());
+        assertEquals(asOf, store.getAsOf());
+
+        // On the widened axis, later additions are correlated without another rebuild
+        double[][] added = store.correlationMatrix(Arrays.asList("VTI", "VXUS"), asOf);
+        assertEquals(fresh(Arrays.asList("VTI", "VXUS"), asOf)[0][1], added[0][1], 1e-12);
+        assertEquals(2, store.getVersion());
+        assertEquals(4, marketData.getPriceLoadCount());
+    }
+
+    private double[][] fresh(List<String> symbols, Date asOf) {
+        return new CorrelationMatrixStore(new SyntheticMarketData().dao(), engine, 365, 100)
+                .correlationMatrix(symbols, asOf);
+    }
+
+    private static Date day(int year, int month, int dayOfMonth) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,90 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.dao.HoldingsDAO;
+import com.vanguard.portal.model.Holding;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class HoldingsServiceImplTest {
+
+    private final List<Holding> holdings = new ArrayList<>();
+    private final Map<String, BigDecimal> prices = new HashMap<>();
+    private final List<Holding> saved = new ArrayList<>();
+
+    private HoldingsServiceImpl service;
+
+    @Before
+    public void setUp() {
+        HoldingsDAO holdingsDAO = (HoldingsDAO) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {HoldingsDAO.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findByCustomerId")) {
+                        return holdings;
+                    }
+                    if (method.getName().equals("updatePrices")) {
+                        @SuppressWarnings("unchecked")
+                        List<Holding> repriced = (List<Holding>) args[0];
+                        saved.addAll(repriced);
+                        return repriced.size();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        MarketDataService marketDataService = (MarketDataService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MarketDataService.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("getStockQuotes")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return new HashMap<>(prices);
+                });
+
+        service = new HoldingsServiceImpl();
+        TestSupport.inject(service, "holdingsDAO", holdingsDAO);
+        TestSupport.inject(service, "marketDataService", marketDataService);
+    }
+
+    @Test
+    public void repricingMatchesBigDecimalFormulas() {
+        // Large position whose scaled product overflows a long
+        addHolding("BIG", "200000.0000", "550000.00");
+        prices.put("BIG", new BigDecimal("600000.1234"));
+        // Quote with more decimals than the fixed-point price scale
+        addHolding("FINE", "1234.5678", "12.34");
+        prices.put("FINE", new BigDecimal("45.678919"));
+        addHolding("LOSS", "0.0001", "100.00");
+        prices.put("LOSS", new BigDecimal("99.995"));
+        addHolding("NONE", "10.0000", "10.00");
+
+        service.updateHoldingPrices("C1");
+
+        assertEquals(3, saved.size());
+        for (Holding holding : saved) {
+            BigDecimal price = prices.get(holding.getSymbol());
+            assertEquals(holding.getSymbol(), price, holding.getCurrentPrice());
+            assertEquals(holding.getSymbol(), holding.getQuantity().multiply(price).setScale(2, RoundingMode.HALF_UP),
+                    holding.getMarketValue());
+            assertEquals(holding.getSymbol(), price.subtract(holding.getPurchasePrice())
+                            .divide(holding.getPurchasePrice(), 4, RoundingMode.HALF_UP).multiply(new BigDecimal("100")),
+                    holding.getGainLossPct());
+        }
+    }
+
+    private void addHolding(String symbol, String quantity, String purchasePrice) {
+        Holding holding = new Holding();
+        holding.setAccountNumber("A1");
+        holding.setSymbol(symbol);
+        holding.setQuantity(new BigDecimal(quantity));
+        holding.setPurchasePrice(new BigDecimal(purchasePrice));
+        holdings.add(holding);
+    }
+}
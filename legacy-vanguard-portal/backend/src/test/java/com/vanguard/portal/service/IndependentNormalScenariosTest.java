@@ -0,0 +1,39 @@
+package com.vanguard.portal.service;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndependentNormalScenariosTest {
+
+    @Test
+    public void scalesOneGaussianPerPositionByItsDailyVolatility() {
+        double[] annualVolatility = {0.15, 0.30, 0.0};
+        IndependentNormalScenarios scenarios = new IndependentNormalScenarios(annualVolatility);
+
+        SplittableRandom rng = new SplittableRandom(7);
+        SplittableRandom expected = new SplittableRandom(7);
+        double[] returns = new double[annualVolatility.length];
+        for (int draw = 0; draw < 100; draw++) {
+            scenarios.nextScenario(rng, returns);
+            for (int i = 0; i < returns.length; i++) {
+                double daily = annualVolatility[i] / Math.sqrt(252.0);
+                assertEquals(MonteCarloVarEngine.nextGaussian(expected) * daily, returns[i], 1e-15);
+            }
+        }
+    }
+
+    @Test
+    public void constructorCopiesTheVolatilities() {
+        double[] annualVolatility = {0.20};
+        IndependentNormalScenarios scenarios = new IndependentNormalScenarios(annualVolatility);
+        annualVolatility[0] = 5.0;
+
+        double[] returns = new double[1];
+        scenarios.nextScenario(new SplittableRandom(3), returns);
+        assertEquals(MonteCarloVarEngine.nextGaussian(new SplittableRandom(3)) * 0.20 / Math.sqrt(252.0),
+                returns[0], 1e-15);
+    }
+}
@@ -0,0 +1,140 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.TestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.soap.SOAPException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MarketDataServiceImplTest {
+
+    private StubQuoteProvider provider;
+    private QuoteBatcher batcher;
+    private MarketDataServiceImpl service;
+    private ExecutorService callers;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new StubQuoteProvider();
+        batcher = provider.newBatcher(1L, 4);
+        service = new MarketDataServiceImpl();
+        TestSupport.inject(service, "quoteBatcher", batcher);
+        service.setQuoteCacheTtlMillis(1L);
+        service.setRetryBaseMillis(60000L);
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        batcher.destroy();
+        provider.stop();
+    }
+
+    @Test
+    public void clientThrowsOnSoapFaultWithEitherDecoder() throws Exception {
+        provider.setFault(true);
+        SoapQuoteClient client = provider.newClient();
+
+        for (String decoder : new String[] {SoapQuoteClient.DECODER_STAX, SoapQuoteClient.DECODER_DOM}) {
+            client.setDecoder(decoder);
+            try {
+                client.getQuotes(new String[] {"VTI"});
+                fail(decoder + " decoder returned quotes for a fault");
+            } catch (SOAPException e) {
+                assertTrue(e.getMessage().contains("Quote service unavailable"));
+            }
+        }
+    }
+
+    @Test
+    public void soapFaultCountsAsProviderFailure() throws Exception {
+        Map<String, BigDecimal> fresh = service.getStockQuotes(new String[] {"VTI", "BND"});
+        assertEquals(StubQuoteProvider.priceOf("VTI"), fresh.get("VTI"));
+        Thread.sleep(10);
+
+        provider.setFault(true);
+        Map<String, BigDecimal> stale = service.getStockQuotes(new String[] {"VTI", "BND"});
+
+        // Last known prices are served, the symbols are queued for retry and the provider backs off
+        assertEquals(fresh, stale);
+        assertEquals(1, service.getConsecutiveProviderFailures());
+        assertEquals(2, service.getStaleSymbolCount());
+        assertEquals(2, service.getStaleQuoteCount());
+
+        int calls = provider.getRequestCount();
+        service.getStockQuotes(new String[] {"VTI", "BND"});
+        assertEquals("provider called while backing off", calls, provider.getRequestCount());
+    }
+
+    @Test
+    public void concurrentRequestsForASymbolShareOneFetch() throws Exception {
+        provider.setLatencyMillis(500);
+
+        List<Future<Map<String, BigDecimal>>> results = startWhileFetching("VTI", 7);
+
+        for (Future<Map<String, BigDecimal>> result : results) {
+            assertEquals(StubQuoteProvider.priceOf("VTI"), result.get(10, TimeUnit.SECONDS).get("VTI"));
+        }
+        assertEquals(1, provider.getRequestCount());
+        assertEquals(1, service.getProviderCallCount());
+        assertEquals(7, service.getCoalescedRequestCount());
+        assertEquals(0, service.getInFlightQuoteCount());
+    }
+
+    @Test
+    public void failedFetchReleasesTheSymbolForTheNextRequest() throws Exception {
+        service.setRetryBaseMillis(1L);
+        service.setRetryMaxMillis(1L);
+        provider.setLatencyMillis(500);
+        provider.setFault(true);
+
+        // The owner and every joined waiter see the failure; nothing was ever quoted, so nothing is served
+        List<Future<Map<String, BigDecimal>>> results = startWhileFetching("VTI", 7);
+        for (Future<Map<String, BigDecimal>> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS).isEmpty());
+        }
+        assertEquals(1, provider.getRequestCount());
+        assertEquals(7, service.getCoalescedRequestCount());
+        assertEquals(0, service.getInFlightQuoteCount());
+        assertEquals(1, service.getStaleSymbolCount());
+
+        // A leaked in-flight entry would hand this request the old failure instead of a new fetch
+        provider.setLatencyMillis(0);
+        provider.setFault(false);
+        Thread.sleep(10);
+        assertEquals(StubQuoteProvider.priceOf("VTI"), service.getStockQuote("VTI"));
+        assertEquals(2, provider.getRequestCount());
+        assertEquals(0, service.getStaleSymbolCount());
+    }
+
+    /**
+     * Starts one request for the symbol and, once its GetQuotes call has reached
+     * the provider, {@code joiners} more while that call is still outstanding.
+     */
+    private List<Future<Map<String, BigDecimal>>> startWhileFetching(final String symbol, int joiners)
+            throws InterruptedException {
+        List<Future<Map<String, BigDecimal>>> results = new ArrayList<>();
+        results.add(callers.submit(() -> service.getStockQuotes(new String[] {symbol})));
+        while (provider.getRequestCount() == 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < joiners; i++) {
+            results.add(callers.submit(() -> service.getStockQuotes(new String[] {symbol})));
+        }
+        return results;
+    }
+}
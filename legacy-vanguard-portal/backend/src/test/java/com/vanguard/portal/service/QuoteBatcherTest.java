@@ -0,0 +1,179 @@
+package com.vanguard.portal.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QuoteBatcherTest {
+
+    private StubQuoteProvider provider;
+    private QuoteBatcher batcher;
+    private ExecutorService callers;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new StubQuoteProvider();
+        callers = Executors.newFixedThreadPool(32);
+    }
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.destroy();
+        }
+        callers.shutdownNow();
+        provider.stop();
+    }
+
+    @Test
+    public void concurrentCallersGetTheirOwnQuotes() throws Exception {
+        batcher = provider.newBatcher(10L, 4);
+        provider.setLatencyMillis(20);
+
+        List<Future<Map<String, BigDecimal>>> results = new ArrayList<>();
+        List<String[]> requested = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            final String[] symbols = randomSymbols(random, 3);
+            requested.add(symbols);
+            results.add(callers.submit(() -> batcher.getQuotes(symbols)));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, BigDecimal> quotes = results.get(i).get(10, TimeUnit.SECONDS);
+            for (String symbol : requested.get(i)) {
+                assertEquals(StubQuoteProvider.priceOf(symbol), quotes.get(symbol));
+            }
+        }
+        assertEquals(200, batcher.getBatchedRequestCount());
+        assertTrue("expected far fewer provider calls than requests, got " + provider.getRequestCount(),
+                provider.getRequestCount() < 50);
+        assertEquals(provider.getRequestCount(), batcher.getBatchCount());
+    }
+
+    @Test
+    public void batchesOverlapUpToMaxInFlight() throws Exception {
+        batcher = provider.newBatcher(1L, 3);
+        provider.setLatencyMillis(150);
+
+        List<Future<Map<String, BigDecimal>>> results = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            final String symbol = "S" + i;
+            results.add(callers.submit(() -> batcher.getQuotes(symbol)));
+            Thread.sleep(15);
+        }
+        for (Future<Map<String, BigDecimal>> result : results) {
+            assertEquals(1, result.get(10, TimeUnit.SECONDS).size());
+        }
+
+        int peak = provider.getPeakConcurrentRequests();
+        assertTrue("batches were sent one at a time", peak > 1);
+        assertTrue("more than maxInFlight batches in flight: " + peak, peak <= 3);
+    }
+
+    @Test
+    public void destroyFailsWaitingCallersPromptly() throws Exception {
+        batcher = provider.newBatcher(1L, 1);
+        provider.setLatencyMillis(2000);
+
+        // The first call takes the only slot; the rest wait behind it
+        Future<Map<String, BigDecimal>> inFlight = callers.submit(() -> batcher.getQuotes("BUSY"));
+        Thread.sleep(100);
+        List<Future<Map<String, BigDecimal>>> waiting = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final String symbol = "W" + i;
+            waiting.add(callers.submit(() -> batcher.getQuotes(symbol)));
+        }
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        batcher.destroy();
+        for (Future<Map<String, BigDecimal>> result : waiting) {
+            try {
+                result.get(1, TimeUnit.SECONDS);
+                fail("caller was served after shutdown");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        // Requests made after shutdown fail straight away as well
+        try {
+            batcher.getQuotes("LATE");
+            fail("request accepted after shutdown");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        inFlight.cancel(true);
+    }
+
+    /**
+     * The same 400 quote requests from 32 threads, once with a provider call
+     * per request and once through the batcher. Timings are in QuoteBatcherBenchmark.
+     */
+    @Test
+    public void batchingCutsProviderCallsUnderLoad() throws Exception {
+        provider.setLatencyMillis(20);
+        SoapQuoteClient client = provider.newClient();
+        batcher = provider.newBatcher(10L, 4);
+
+        Random random = new Random(11);
+        final List<String[]> requests = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            requests.add(randomSymbols(random, 5));
+        }
+
+        provider.resetCounters();
+        drive(requests, symbols -> client.getQuotes(symbols));
+        assertEquals(400, provider.getRequestCount());
+
+        provider.resetCounters();
+        drive(requests, symbols -> batcher.getQuotes(symbols));
+        int batchedCalls = provider.getRequestCount();
+        assertTrue("batched run made " + batchedCalls + " provider calls", batchedCalls * 5 < 400);
+        assertTrue(provider.getPeakConcurrentRequests() <= 4);
+    }
+
+    private void drive(List<String[]> requests, QuoteCall call) throws Exception {
+        List<Callable<Map<String, BigDecimal>>> tasks = new ArrayList<>();
+        for (final String[] symbols : requests) {
+            tasks.add(() -> call.quotes(symbols));
+        }
+        List<Future<Map<String, BigDecimal>>> results = callers.invokeAll(tasks);
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, BigDecimal> quotes = results.get(i).get();
+            assertEquals(requests.get(i).length, quotes.size());
+        }
+    }
+
+    private static String[] randomSymbols(Random random, int count) {
+        Set<String> symbols = new LinkedHashSet<>();
+        while (symbols.size() < count) {
+            symbols.add("SYM" + random.nextInt(500));
+        }
+        return symbols.toArray(new String[0]);
+    }
+
+    private interface QuoteCall {
+        Map<String, BigDecimal> quotes(String[] symbols) throws Exception;
+    }
+}
@@ -0,0 +1,116 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.TestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QuoteCacheTest {
+
+    private StubQuoteProvider provider;
+    private QuoteBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new StubQuoteProvider();
+    }
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.destroy();
+        }
+        provider.stop();
+    }
+
+    @Test
+    public void freshEntriesAreHitsAndExpiredEntriesAreMisses() throws Exception {
+        QuoteCache cache = new QuoteCache(100L, 10);
+        cache.putAll(quotes("VTI", "BND"));
+
+        assertEquals(2, cache.getAll(Arrays.asList("VTI", "BND")).size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+
+        Thread.sleep(250);
+
+        assertTrue(cache.getAll(Arrays.asList("VTI", "BND")).isEmpty());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void leastRecentlyUsedSymbolIsEvicted() {
+        QuoteCache cache = new QuoteCache(60000L, 3);
+        cache.putAll(quotes("A"));
+        cache.putAll(quotes("B"));
+        cache.putAll(quotes("C"));
+
+        // Touch A so that B becomes the least recently used
+        cache.getAll(Collections.singletonList("A"));
+        cache.putAll(quotes("D"));
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        Map<String, BigDecimal> found = cache.getAll(Arrays.asList("A", "B", "C", "D"));
+        assertFalse(found.containsKey("B"));
+        assertEquals(3, found.size());
+    }
+
+    @Test
+    public void missingSymbolsCountAsMisses() {
+        QuoteCache cache = new QuoteCache(60000L, 10);
+        cache.putAll(quotes("VTI"));
+
+        Map<String, BigDecimal> found = cache.getAll(Arrays.asList("VTI", "VXUS", "BND"));
+
+        assertEquals(Collections.singleton("VTI"), found.keySet());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void serviceOnlyCallsProviderForMissesAndExpiredQuotes() throws Exception {
+        MarketDataServiceImpl service = new MarketDataServiceImpl();
+        batcher = provider.newBatcher(1L, 4);
+        TestSupport.inject(service, "quoteBatcher", batcher);
+        service.setQuoteCacheTtlMillis(200L);
+
+        Map<String, BigDecimal> first = service.getStockQuotes(new String[] {"VTI", "BND"});
+        assertEquals(StubQuoteProvider.priceOf("VTI"), first.get("VTI"));
+        assertEquals(StubQuoteProvider.priceOf("BND"), first.get("BND"));
+        assertEquals(1, provider.getRequestCount());
+
+        // Both cached, one new symbol: only the new one goes to the provider
+        Map<String, BigDecimal> second = service.getStockQuotes(new String[] {"VTI", "BND", "VXUS"});
+        assertEquals(3, second.size());
+        assertEquals(2, provider.getRequestCount());
+        assertEquals(3, provider.getSymbolsRequested());
+        assertEquals(2, service.getQuoteCache().getHitCount());
+
+        // Once the TTL has passed everything is fetched again, in one call
+        Thread.sleep(350);
+        service.getStockQuotes(new String[] {"VTI", "BND", "VXUS"});
+        assertEquals(3, provider.getRequestCount());
+        assertEquals(6, provider.getSymbolsRequested());
+    }
+
+    private static Map<String, BigDecimal> quotes(String... symbols) {
+        Map<String, BigDecimal> quotes = new HashMap<>();
+        for (String symbol : symbols) {
+            quotes.put(symbol, StubQuoteProvider.priceOf(symbol));
+        }
+        return quotes;
+    }
+}
@@ -0,0 +1,125 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.dao.HoldingsDAO;
+import com.vanguard.portal.dao.MarketDataDAO;
+import com.vanguard.portal.model.Holding;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RiskAnalyticsServiceImplTest {
+
+    private final Map<String, List<Holding>> accounts = new HashMap<>();
+    private final List<String> marketDataCalls = Collections.synchronizedList(new ArrayList<>());
+    private final SyntheticMarketData syntheticMarketData = new SyntheticMarketData();
+    private RiskAnalyticsServiceImpl service;
+
+    @Before
+    public void setUp() {
+        HoldingsDAO holdingsDAO = (HoldingsDAO) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {HoldingsDAO.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findByAccountNumber")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return accounts.get((String) args[0]);
+                });
+
+        service = new RiskAnalyticsServiceImpl();
+        service.setHoldingsDAO(holdingsDAO);
+        MarketDataDAO marketData = syntheticMarketData.dao();
+        service.setMarketDataDAO((MarketDataDAO) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MarketDataDAO.class}, (proxy, method, args) -> {
+                    marketDataCalls.add(method.getName());
+                    try {
+                        return method.invoke(marketData, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }));
+        service.setSimulationThreads(2);
+        service.setNumSimulations(20000);
+        service.setSimulationSeed(42L);
+    }
+
+    @Test
+    public void lotsOfTheSameSymbolGiveTheSameVarAsOneCombinedPosition() {
+        // Same exposures, split into several lots per symbol in one account
+        hold("LOTS", "VTI", "1000.00");
+        hold("LOTS", "BND", "500.00");
+        hold("LOTS", "VTI", "2000.00");
+        hold("LOTS", "VXUS", "1500.00");
+        hold("LOTS", "VXUS", "250.00");
+        hold("LOTS", "BND", null);
+
+        hold("COMBINED", "VTI", "3000.00");
+        hold("COMBINED", "BND", "500.00");
+        hold("COMBINED", "VXUS", "1750.00");
+
+        double lots = service.calculateValueAtRisk("LOTS", 0.99, 1);
+        double combined = service.calculateValueAtRisk("COMBINED", 0.99, 1);
+
+        assertTrue("VaR not computed", combined > 0.0);
+        assertEquals(combined, lots, 0.0);
+    }
+
+    @Test
+    public void singleSymbolHeldInTwoLotsHasTheRiskOfOnePosition() {
+        hold("ONE", "VTI", "5000.00");
+        hold("SPLIT", "VTI", "2500.00");
+        hold("SPLIT", "VTI", "2500.00");
+
+        // Two lots of one symbol move together: no diversification, and no singular matrix
+        assertEquals(service.calculateValueAtRisk("ONE", 0.99, 1),
+                service.calculateValueAtRisk("SPLIT", 0.99, 1), 0.0);
+    }
+
+    @Test
+    public void marketDataIsLoadedInBulkOncePerRunAndNotDuringSimulation() {
+        hold("ACC", "VTI", "3000.00");
+        hold("ACC", "BND", "500.00");
+        hold("ACC", "VTI", "1000.00");
+        hold("ACC", "VXUS", "1750.00");
+
+        assertTrue(service.calculateValueAtRisk("ACC", 0.99, 1) > 0.0);
+        // One price load for the correlation store, one volatility load; 20000 scenarios add nothing
+        assertEquals(Arrays.asList("getHistoricalPrices", "getHistoricalVolatilities"), marketDataCalls);
+
+        marketDataCalls.clear();
+        assertTrue(service.calculateValueAtRisk("ACC", 0.99, 1) > 0.0);
+        // Correlations come from the store; volatilities are loaded again, once
+        assertEquals(Collections.singletonList("getHistoricalVolatilities"), marketDataCalls);
+    }
+
+    @Test
+    public void correlationsForManySymbolsComeFromOnePriceLoad() {
+        for (int s = 0; s < 200; s++) {
+            hold("WIDE", "SYM" + s, "1000.00");
+        }
+
+        assertTrue(service.calculateValueAtRisk("WIDE", 0.99, 1) > 0.0);
+        // 19900 pairs, but one bulk history load instead of a query per pair
+        assertEquals(1, syntheticMarketData.getPriceLoadCount());
+        assertEquals(200, syntheticMarketData.getSymbolsLoaded());
+        assertEquals(Arrays.asList("getHistoricalPrices", "getHistoricalVolatilities"), marketDataCalls);
+    }
+
+    private void hold(String account, String symbol, String marketValue) {
+        Holding holding = new Holding();
+        holding.setAccountNumber(account);
+        holding.setSymbol(symbol);
+        holding.setMarketValue(marketValue != null ? new BigDecimal(marketValue) : null);
+        accounts.computeIfAbsent(account, key -> new ArrayList<>()).add(holding);
+    }
+}
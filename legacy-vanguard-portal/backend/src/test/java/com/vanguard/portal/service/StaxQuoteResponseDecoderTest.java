@@ -0,0 +1,111 @@
+package com.vanguard.portal.service;
+
+import org.junit.Test;
+
+import javax.xml.soap.SOAPException;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StaxQuoteResponseDecoderTest {
+
+    private static final String ENVELOPE_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    private final StaxQuoteResponseDecoder decoder = new StaxQuoteResponseDecoder(SoapQuoteClient.SOAP_NAMESPACE);
+
+    @Test
+    public void manyQuotesDecodeLikeTheDomPath() throws Exception {
+        String xml = response(1000);
+
+        Map<String, BigDecimal> quotes = stax(xml);
+
+        assertEquals(1000, quotes.size());
+        assertEquals(new BigDecimal("100.0100"), quotes.get("SYM1"));
+        assertEquals(dom(xml), quotes);
+    }
+
+    @Test
+    public void layoutVariationsDecodeLikeTheDomPath() throws Exception {
+        // Default and other prefixes, indentation, reordered children, an unrelated
+        // element inside a quote, a header and a repeated symbol (last one wins)
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<env:Envelope xmlns:env=\"" + ENVELOPE_NS + "\">\n"
+                + "  <env:Header><x:Trace xmlns:x=\"urn:trace\">42</x:Trace></env:Header>\n"
+                + "  <env:Body>\n"
+                + "    <GetQuotesResponse xmlns=\"" + SoapQuoteClient.SOAP_NAMESPACE + "\">\n"
+                + "      <Quote>\n"
+                + "        <Symbol> VTI </Symbol>\n"
+                + "        <LastPrice>\n 231.45 \n</LastPrice>\n"
+                + "      </Quote>\n"
+                + "      <q:Quote xmlns:q=\"" + SoapQuoteClient.SOAP_NAMESPACE + "\">"
+                + "<q:LastPrice>72.1</q:LastPrice><x:Volume xmlns:x=\"urn:other\">900</x:Volume>"
+                + "<q:Symbol>BND</q:Symbol></q:Quote>\n"
+                + "      <Quote><Symbol>VTI</Symbol><LastPrice>231.50</LastPrice></Quote>\n"
+                + "    </GetQuotesResponse>\n"
+                + "  </env:Body>\n"
+                + "</env:Envelope>\n";
+
+        Map<String, BigDecimal> quotes = stax(xml);
+
+        assertEquals(2, quotes.size());
+        assertEquals(new BigDecimal("231.50"), quotes.get("VTI"));
+        assertEquals(new BigDecimal("72.1"), quotes.get("BND"));
+        assertEquals(dom(xml), quotes);
+    }
+
+    @Test
+    public void emptyResponseDecodesLikeTheDomPath() throws Exception {
+        String xml = response(0);
+
+        assertTrue(stax(xml).isEmpty());
+        assertEquals(dom(xml), stax(xml));
+    }
+
+    @Test
+    public void faultIsThrownByBothPaths() throws Exception {
+        String xml = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"" + ENVELOPE_NS + "\"><SOAP-ENV:Body>"
+                + "<SOAP-ENV:Fault><faultcode>SOAP-ENV:Server</faultcode>"
+                + "<faultstring>Quote service unavailable</faultstring></SOAP-ENV:Fault>"
+                + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+        try {
+            stax(xml);
+            fail("StAX decoder returned quotes for a fault");
+        } catch (SOAPException e) {
+            assertEquals("SOAP Fault: Quote service unavailable", e.getMessage());
+        }
+        try {
+            dom(xml);
+            fail("DOM decoder returned quotes for a fault");
+        } catch (SOAPException e) {
+            assertEquals("SOAP Fault: Quote service unavailable", e.getMessage());
+        }
+    }
+
+    /** A GetQuotesResponse as the provider renders it, SYM0 to SYM(count - 1). */
+    static String response(int count) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"" + ENVELOPE_NS + "\" "
+                + "xmlns:md=\"" + SoapQuoteClient.SOAP_NAMESPACE + "\"><SOAP-ENV:Body><md:GetQuotesResponse>");
+        for (int i = 0; i < count; i++) {
+            xml.append("<md:Quote><md:Symbol>SYM").append(i).append("</md:Symbol><md:LastPrice>")
+                    .append(BigDecimal.valueOf(1000000 + i * 100, 4).toPlainString())
+                    .append("</md:LastPrice></md:Quote>");
+        }
+        return xml.append("</md:GetQuotesResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>").toString();
+    }
+
+    private Map<String, BigDecimal> stax(String xml) throws Exception {
+        return decoder.decode(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, BigDecimal> dom(String xml) throws Exception {
+        return SoapQuoteClient.decodeWithDom(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                "text/xml; charset=utf-8");
+    }
+}
@@ -0,0 +1,165 @@
+package com.vanguard.portal.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vanguard.portal.TestSupport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the GetQuotes SOAP provider, on an ephemeral port.
+ *
+ * Every requested symbol is quoted at a fixed price derived from its name
+ * (see {@link #priceOf}). Latency and SOAP faults can be switched on, and the
+ * number of requests, symbols and the peak number of concurrent requests are
+ * counted so tests can see how the client side talked to it.
+ */
+public class StubQuoteProvider {
+
+    private static final Pattern SYMBOL = Pattern.compile("<md:Symbol>([^<]*)</md:Symbol>");
+
+    private final HttpServer server;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger symbolsRequested = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peakConcurrent = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile boolean fault;
+
+    public StubQuoteProvider() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/soap/v1/quotes", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/soap/v1/quotes";
+    }
+
+    /** A client pointed at this stub. */
+    public SoapQuoteClient newClient() {
+        SoapQuoteClient client = new SoapQuoteClient();
+        client.setEndpoint(getEndpoint());
+        return client;
+    }
+
+    /** A started batcher sending through a client for this stub; destroy it when done. */
+    public QuoteBatcher newBatcher(long maxWaitMillis, int maxInFlight) {
+        QuoteBatcher batcher = new QuoteBatcher();
+        TestSupport.inject(batcher, "soapQuoteClient", newClient());
+        batcher.setMaxWaitMillis(maxWaitMillis);
+        batcher.setMaxInFlight(maxInFlight);
+        batcher.afterPropertiesSet();
+        return batcher;
+    }
+
+    public static BigDecimal priceOf(String symbol) {
+        return BigDecimal.valueOf(10000 + (symbol.hashCode() & 0xffff), 2);
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setFault(boolean fault) {
+        this.fault = fault;
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    public int getSymbolsRequested() {
+        return symbolsRequested.get();
+    }
+
+    public int getPeakConcurrentRequests() {
+        return peakConcurrent.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+        symbolsRequested.set(0);
+        peakConcurrent.set(0);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int active = concurrent.incrementAndGet();
+        peakConcurrent.accumulateAndGet(active, Math::max);
+        try {
+            String request = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            List<String> symbols = new ArrayList<>();
+            Matcher matcher = SYMBOL.matcher(request);
+            while (matcher.find()) {
+                symbols.add(matcher.group(1));
+            }
+            requests.incrementAndGet();
+            symbolsRequested.addAndGet(symbols.size());
+
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+                    + "xmlns:md=\"" + SoapQuoteClient.SOAP_NAMESPACE + "\"><SOAP-ENV:Body>");
+            int status = 200;
+            if (fault) {
+                status = 500;
+                xml.append("<SOAP-ENV:Fault><faultcode>SOAP-ENV:Server</faultcode>"
+                        + "<faultstring>Quote service unavailable</faultstring></SOAP-ENV:Fault>");
+            } else {
+                xml.append("<md:GetQuotesResponse>");
+                for (String symbol : symbols) {
+                    xml.append("<md:Quote><md:Symbol>").append(symbol).append("</md:Symbol><md:LastPrice>")
+                            .append(priceOf(symbol).toPlainString()).append("</md:LastPrice></md:Quote>");
+                }
+                xml.append("</md:GetQuotesResponse>");
+            }
+            xml.append("</SOAP-ENV:Body></SOAP-ENV:Envelope>");
+
+            byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+}
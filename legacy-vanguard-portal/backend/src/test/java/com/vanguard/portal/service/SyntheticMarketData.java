@@ -0,0 +1,109 @@
+package com.vanguard.portal.service;
+
+import com.vanguard.portal.dao.MarketDataDAO;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MarketDataDAO over generated price histories, for risk tests.
+ *
+ * Every symbol follows a daily random walk driven by one market factor plus
+ * its own noise (loading 0.6), so any two symbols correlate at about 0.36. A
+ * symbol's history depends only on its name and the date range. Volatility is
+ * a fixed value derived from the name. Calls to the bulk price load are counted.
+ * A symbol can be given a listing date, before which it has no closes.
+ */
+public class SyntheticMarketData {
+
+    private final AtomicInteger priceLoads = new AtomicInteger();
+    private final AtomicInteger symbolsLoaded = new AtomicInteger();
+    private volatile long loadDelayMillis;
+    private final Map<String, Date> listed = new ConcurrentHashMap<>();
+
+    public MarketDataDAO dao() {
+        return (MarketDataDAO) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MarketDataDAO.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getHistoricalPrices") && args[0] instanceof List) {
+                        @SuppressWarnings("unchecked")
+                        List<String> symbols = (List<String>) args[0];
+                        return historicalPrices(symbols, (Date) args[1], (Date) args[2]);
+                    }
+                    if (method.getName().equals("getHistoricalVolatilities")) {
+                        @SuppressWarnings("unchecked")
+                        List<String> symbols = (List<String>) args[0];
+                        Map<String, Double> volatilities = new HashMap<>();
+                        for (String symbol : symbols) {
+                            volatilities.put(symbol, volatilityOf(symbol));
+                        }
+                        return volatilities;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    public static double volatilityOf(String symbol) {
+        return 0.10 + (symbol.hashCode() & 0xff) / 1000.0;
+    }
+
+    /** Delay added to every bulk price load, to make loads observable from other threads. */
+    public void setLoadDelayMillis(long loadDelayMillis) {
+        this.loadDelayMillis = loadDelayMillis;
+    }
+
+    public void setListed(String symbol, Date firstClose) {
+        listed.put(symbol, firstClose);
+    }
+
+    public int getPriceLoadCount() {
+        return priceLoads.get();
+    }
+
+    public int getSymbolsLoaded() {
+        return symbolsLoaded.get();
+    }
+
+    private Map<String, Map<Date, BigDecimal>> historicalPrices(List<String> symbols, Date start, Date end)
+            throws InterruptedException {
+        priceLoads.incrementAndGet();
+        symbolsLoaded.addAndGet(symbols.size());
+        if (loadDelayMillis > 0) {
+            Thread.sleep(loadDelayMillis);
+        }
+
+        Map<String, Map<Date, BigDecimal>> history = new HashMap<>();
+        for (String symbol : symbols) {
+            Random market = new Random(start.getTime());
+            Random own = new Random(start.getTime() ^ symbol.hashCode());
+            Date firstClose = listed.get(symbol);
+            Map<Date, BigDecimal> prices = new TreeMap<>();
+
+            Calendar day = Calendar.getInstance();
+            day.setTime(start);
+            double price = 100.0;
+            while (!day.getTime().after(end)) {
+                int weekday = day.get(Calendar.DAY_OF_WEEK);
+                if (weekday != Calendar.SATURDAY && weekday != Calendar.SUNDAY) {
+                    double shock = 0.6 * market.nextGaussian() + 0.8 * own.nextGaussian();
+                    price *= 1.0 + 0.01 * shock;
+                    if (firstClose == null || !day.getTime().before(firstClose)) {
+                        prices.put(day.getTime(), BigDecimal.valueOf(price).setScale(4, RoundingMode.HALF_UP));
+                    }
+                }
+                day.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            history.put(symbol, prices);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,246 @@
+package com.vanguard.portal.servlet;
+
+import com.vanguard.portal.TestDatabase;
+import com.vanguard.portal.TestSupport;
+import com.vanguard.portal.dao.HoldingsDAOImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BalancesHoldingsServletTest {
+
+    private static final int ACCOUNTS = 3;
+    private static final int SYMBOLS_PER_ACCOUNT = 150;
+
+    private TestDatabase database;
+    private BalancesHoldingsServlet servlet;
+
+    // Streaming result set stand-in: what the DAO asked for, and where to fail
+    private final List<Integer> fetchSizes = new ArrayList<>();
+    private int failAfterRows = -1;
+    private boolean cursorClosed;
+
+    // Response state
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final StringWriter errorPage = new StringWriter();
+    private boolean committed;
+    private boolean reset;
+
+    @Before
+    public void setUp() throws SQLException {
+        database = new TestDatabase();
+        try (Connection conn = database.getConnection();
+             PreparedStatement account = conn.prepareStatement("INSERT INTO accounts "
+                     + "(account_number, customer_id, account_type, status, open_date) VALUES (?, 'C1', 'IRA', 'ACTIVE', CURRENT_DATE)");
+             PreparedStatement holding = conn.prepareStatement("INSERT INTO holdings (account_number, symbol, "
+                     + "quantity, purchase_price, current_price, market_value, gain_loss_pct, purchase_date) "
+                     + "VALUES (?, ?, 1.5000, 10.00, 11.00, ?, 10.0000, '2020-02-29')")) {
+            int row = 0;
+            for (int a = 1; a <= ACCOUNTS; a++) {
+                account.setString(1, "A" + a);
+                account.executeUpdate();
+                for (int s = 0; s < SYMBOLS_PER_ACCOUNT; s++) {
+                    holding.setString(1, "A" + a);
+                    holding.setString(2, "S" + s);
+                    holding.setBigDecimal(3, BigDecimal.valueOf(100000 - row++, 2));
+                    holding.addBatch();
+                }
+            }
+            holding.executeBatch();
+        }
+
+        HoldingsDAOImpl holdingsDAO = new HoldingsDAOImpl();
+        TestSupport.inject(holdingsDAO, "dataSource", streamingDataSource(database));
+        servlet = new BalancesHoldingsServlet();
+        TestSupport.inject(servlet, "holdingsDAO", holdingsDAO);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void exportStreamsEveryHoldingFromAStreamingCursor() throws Exception {
+        servlet.doGet(exportRequest(), response());
+
+        String[] lines = csv().split("\n");
+        assertEquals(1 + ACCOUNTS * SYMBOLS_PER_ACCOUNT, lines.length);
+        assertEquals("Account Number,Symbol,Quantity,Purchase Price,Current Price,Market Value,Gain/Loss %,"
+                + "Purchase Date", lines[0]);
+        // Largest market value first
+        assertEquals("A1,S0,1.5000,10.00,11.00,1000.00,10.0000%,2020-02-29", lines[1]);
+        assertEquals("A3,S149,1.5000,10.00,11.00,995.51,10.0000%,2020-02-29", lines[lines.length - 1]);
+
+        // Connector/J streams only with a forward-only, read-only statement and this fetch size
+        assertEquals(Integer.MIN_VALUE, (int) fetchSizes.get(0));
+        assertTrue(cursorClosed);
+        assertFalse(reset);
+    }
+
+    @Test
+    public void failureAfterOutputStartedAbortsTheDownload() throws Exception {
+        failAfterRows = 250;
+
+        try {
+            servlet.doGet(exportRequest(), response());
+            fail("a failed export after the response was committed must not complete normally");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("C1"));
+        }
+
+        // The header and the first flushed block went out; no error page was appended to the file
+        String[] lines = csv().split("\n");
+        assertEquals(1 + 200, lines.length);
+        assertFalse(reset);
+        assertEquals("", errorPage.toString());
+        assertTrue(cursorClosed);
+    }
+
+    private String csv() {
+        return new String(body.toByteArray(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+    }
+
+    /**
+     * Hands out connections whose statements accept Connector/J's streaming fetch
+     * size, which H2 rejects, and whose result sets can be made to fail mid-stream.
+     */
+    private DataSource streamingDataSource(final TestDatabase database) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[] {DataSource.class}, (proxy, method, args) -> {
+                    Object result = invoke(database, method, args);
+                    if (!method.getName().equals("getConnection")) {
+                        return result;
+                    }
+                    final Connection conn = (Connection) result;
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                            new Class<?>[] {Connection.class}, (c, m, a) -> {
+                                Object statement = invoke(conn, m, a);
+                                return m.getName().equals("prepareStatement")
+                                        ? streamingStatement((PreparedStatement) statement) : statement;
+                            });
+                });
+    }
+
+    private PreparedStatement streamingStatement(final PreparedStatement statement) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("setFetchSize")) {
+                        fetchSizes.add((Integer) args[0]);
+                        return null;
+                    }
+                    Object result = invoke(statement, method, args);
+                    if (!method.getName().equals("executeQuery")) {
+                        return result;
+                    }
+                    final ResultSet rs = (ResultSet) result;
+                    final int[] rows = {0};
+                    return Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[] {ResultSet.class}, (r, m, a) -> {
+                                if (m.getName().equals("next") && rows[0]++ == failAfterRows) {
+                                    throw new SQLException("Communications link failure");
+                                }
+                                if (m.getName().equals("close")) {
+                                    cursorClosed = true;
+                                }
+                                return invoke(rs, m, a);
+                            });
+                });
+    }
+
+    private HttpServletRequest exportRequest() {
+        final HttpSession session = (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(),
+                new Class<?>[] {HttpSession.class}, (proxy, method, args) ->
+                        method.getName().equals("getAttribute") && "customerId".equals(args[0]) ? "C1" : null);
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getSession":
+                            return session;
+                        case "getParameter":
+                            return "action".equals(args[0]) ? "export" : null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /** A response that commits on the first flush, as a container does. */
+    private HttpServletResponse response() {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public void flush() {
+                committed = true;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return out;
+                        case "getWriter":
+                            return new PrintWriter(errorPage);
+                        case "isCommitted":
+                            return committed;
+                        case "reset":
+                            if (committed) {
+                                throw new IllegalStateException("Response already committed");
+                            }
+                            reset = true;
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.vanguard.portal.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedPointTest {
+
+    @Test
+    public void multiplyMatchesBigDecimal() {
+        Random random = new Random(17);
+        for (int i = 0; i < 100000; i++) {
+            BigDecimal quantity = BigDecimal.valueOf(random.nextLong() % 1000000000000L, 4).abs();
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(100000000), 4);
+
+            long product = FixedPoint.multiply(
+                    FixedPoint.toScaled(quantity, FixedPoint.QUANTITY_SCALE), FixedPoint.QUANTITY_SCALE,
+                    FixedPoint.toScaled(price, FixedPoint.PRICE_SCALE), FixedPoint.PRICE_SCALE,
+                    FixedPoint.MONEY_SCALE);
+
+            assertEquals(quantity + " x " + price,
+                    quantity.multiply(price).setScale(FixedPoint.MONEY_SCALE, RoundingMode.HALF_UP),
+                    FixedPoint.toBigDecimal(product, FixedPoint.MONEY_SCALE));
+        }
+    }
+
+    @Test
+    public void multiplyFallsBackToBigDecimalWhenTheProductOverflows() {
+        // 200,000 shares at about $600k: 2e9 * 6e9 does not fit in a long, the result does
+        BigDecimal quantity = new BigDecimal("200000.0000");
+        BigDecimal price = new BigDecimal("600000.1234");
+
+        long product = FixedPoint.multiply(
+                FixedPoint.toScaled(quantity, FixedPoint.QUANTITY_SCALE), FixedPoint.QUANTITY_SCALE,
+                FixedPoint.toScaled(price, FixedPoint.PRICE_SCALE), FixedPoint.PRICE_SCALE,
+                FixedPoint.MONEY_SCALE);
+
+        assertEquals(new BigDecimal("120000024680.00"), FixedPoint.toBigDecimal(product, FixedPoint.MONEY_SCALE));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void multiplyThrowsWhenTheResultDoesNotFit() {
+        FixedPoint.multiply(Long.MAX_VALUE, 0, Long.MAX_VALUE, 0, 0);
+    }
+
+    @Test
+    public void percentChangeMatchesBigDecimal() {
+        Random random = new Random(23);
+        for (int i = 0; i < 100000; i++) {
+            BigDecimal base = BigDecimal.valueOf(1 + random.nextInt(10000000), 2);
+            BigDecimal value = BigDecimal.valueOf(random.nextInt(100000000), 6);
+
+            long change = FixedPoint.percentChange(FixedPoint.toScaled(value, 6), FixedPoint.toScaled(base, 6));
+
+            assertEquals(value + " vs " + base,
+                    value.subtract(base).divide(base, 4, RoundingMode.HALF_UP).multiply(new BigDecimal("100")),
+                    FixedPoint.toBigDecimal(change, FixedPoint.PERCENT_SCALE));
+        }
+    }
+
+    @Test
+    public void percentChangeFallsBackToBigDecimalWhenScalingOverflows() {
+        long base = 1000000000000000L;
+        long value = 3000000000000000L;
+
+        assertEquals(new BigDecimal("200.0000"),
+                FixedPoint.toBigDecimal(FixedPoint.percentChange(value, base), FixedPoint.PERCENT_SCALE));
+    }
+
+    @Test
+    public void exactScaleKeepsExtraDigitsOnly() {
+        assertEquals(4, FixedPoint.exactScale(new BigDecimal("101.25"), 4));
+        assertEquals(4, FixedPoint.exactScale(new BigDecimal("101.2500000000"), 4));
+        assertEquals(6, FixedPoint.exactScale(new BigDecimal("101.250001"), 4));
+        assertEquals(6, FixedPoint.exactScale(new BigDecimal("101.25000100"), 4));
+    }
+
+    @Test
+    public void divideHalfUpRoundsTiesAwayFromZero() {
+        assertEquals(3L, FixedPoint.divideHalfUp(5L, 2L));
+        assertEquals(-3L, FixedPoint.divideHalfUp(-5L, 2L));
+        assertEquals(2L, FixedPoint.divideHalfUp(7L, 4L));
+        assertEquals(-2L, FixedPoint.divideHalfUp(7L, -4L));
+    }
+}